@@ -34,7 +34,9 @@ public class Album {
      * @param soundClip
      */
     public void addSoundClip(SoundClip soundClip) {
-        soundClips.add(soundClip);
+        if (soundClips.add(soundClip)) {
+            soundClip.addedTo(this);
+        }
     }
 
     /**
@@ -44,7 +46,9 @@ public class Album {
      * @return true if the sound clip is found in the album.
      */
     public void removeSoundClip(SoundClip soundClip) {
-        soundClips.remove(soundClip);
+        if (soundClips.remove(soundClip)) {
+            soundClip.removedFrom(this);
+        }
     }
 
     /**
@@ -53,7 +57,20 @@ public class Album {
      * @param subAlbum
      */
     public void removeSubAlbum(Album subAlbum) {
-        subAlbums.remove(subAlbum);
+        if (subAlbums.remove(subAlbum)) {
+            subAlbum.detachSoundClips();
+        }
+    }
+
+    // Tells the sound clips of a removed album and all albums below it
+    // that these albums no longer hold them. The albums keep their clips.
+    private void detachSoundClips() {
+        for (SoundClip soundClip : soundClips) {
+            soundClip.removedFrom(this);
+        }
+        for (Album subAlbum : subAlbums) {
+            subAlbum.detachSoundClips();
+        }
     }
 
     /**
@@ -1,5 +1,9 @@
+import java.util.ArrayList;
+import java.util.Set;
+
 public class Music_Organizer {
     private Album rootAlbum;
+
     public Music_Organizer() {
         this.rootAlbum = new Album("All Sound Content");
     }
@@ -21,37 +25,46 @@ public class Music_Organizer {
     }
 
     /**
-     * Check if the sound clip is found in the album.
+     * Check if the sound clip is found in the album or any of its sub-albums.
+     * Only the albums holding the clip are looked at, walking up from each
+     * of them towards the root.
      * @param soundClip
      * @param album
      * @return true if the sound clip is found in the album.
      */
     public Boolean isSoundClipFound(SoundClip soundClip, Album album) {
-        if (album.getSoundClips().isEmpty() && album.getSubAlbums().isEmpty()){
-            return false;
-        }
-        if (!album.getSubAlbums().isEmpty()) {
-            for (Album subAlbum: album.getSubAlbums()) {
-                if (isSoundClipFound(soundClip, subAlbum)) {
+        for (Album holder : soundClip.getAlbums()) {
+            for (Album a = holder; a != null; a = a.getParentAlbum()) {
+                if (a == album) {
                     return true;
                 }
-            }   
+            }
         }
-        return album.getSoundClips().contains(soundClip);
+        return false;
     }
 
     /**
-     * Remove the sound clip from the album.
+     * @param soundClip
+     * @return the albums holding the sound clip.
+     */
+    public Set<Album> getAlbumsContaining(SoundClip soundClip) {
+        return soundClip.getAlbums();
+    }
+
+    /**
+     * Remove the sound clip from the album. Removing it from the root album
+     * deletes the file and removes the clip from every album holding it.
      * @param soundClip
      * @param album
      */
     public void removeSoundClip(SoundClip soundClip, Album album) {
         if (album.isRootAlbum()) {
            soundClip.remove(); 
+           for (Album holder : new ArrayList<>(soundClip.getAlbums())) {
+               holder.removeSoundClip(soundClip);
+           }
         }
-        if (album.getSoundClips().contains(soundClip)) {
-            album.removeSoundClip(soundClip);
-        }
+        album.removeSoundClip(soundClip);
     }
 
     /**
@@ -70,7 +83,7 @@ public class Music_Organizer {
     public void addSoundClip(SoundClip soundClip, Album album) {
         Album rootAlbum = getRootAlbum();
         if (!rootAlbum.getSoundClips().contains(soundClip)) {
-            rootAlbum.getSoundClips().add(soundClip);
+            rootAlbum.addSoundClip(soundClip);
         } else {
             album.addSoundClip(soundClip);
         }
@@ -1,4 +1,5 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -59,4 +60,56 @@ public class Music_OrganizerTest {
         organizer.removeSubAlbum(subAlbum);
         assertTrue(!rootAlbum.hasSubAlbums());
     }
+
+    @Test
+    public void testIsSoundClipFoundInSubAlbum() {
+        Music_Organizer organizer = new Music_Organizer();
+        Album rootAlbum = organizer.getRootAlbum();
+        Album subAlbum = new Album("Sub Album", rootAlbum);
+        Album subSubAlbum = new Album("Sub Sub Album", subAlbum);
+        SoundClip soundClip = new SoundClip(new File("../testFiles/test.txt"), "Test");
+        organizer.addSoundClip(soundClip, rootAlbum);
+        organizer.addSoundClip(soundClip, subSubAlbum);
+        assertTrue(organizer.isSoundClipFound(soundClip, subAlbum));
+        assertEquals(2, organizer.getAlbumsContaining(soundClip).size());
+    }
+
+    @Test
+    public void testIsSoundClipFoundAfterRemoveSubAlbum() {
+        Music_Organizer organizer = new Music_Organizer();
+        Album rootAlbum = organizer.getRootAlbum();
+        Album subAlbum = new Album("Sub Album", rootAlbum);
+        SoundClip soundClip = new SoundClip(new File("../testFiles/test.txt"), "Test");
+        organizer.addSoundClip(soundClip, rootAlbum);
+        organizer.addSoundClip(soundClip, subAlbum);
+        organizer.removeSubAlbum(subAlbum);
+        assertFalse(organizer.isSoundClipFound(soundClip, subAlbum));
+        assertTrue(organizer.isSoundClipFound(soundClip, rootAlbum));
+    }
+
+    @Test
+    public void testIsSoundClipFoundWhenAddedToAlbumDirectly() {
+        Music_Organizer organizer = new Music_Organizer();
+        Album rootAlbum = organizer.getRootAlbum();
+        Album subAlbum = new Album("Sub Album", rootAlbum);
+        SoundClip soundClip = new SoundClip(new File("../testFiles/test.txt"), "Test");
+        subAlbum.addSoundClip(soundClip);
+        assertTrue(organizer.isSoundClipFound(soundClip, rootAlbum));
+    }
+
+    @Test
+    public void testIsSoundClipFoundWhenAddedThroughOrganizerAndDirectly() {
+        Music_Organizer organizer = new Music_Organizer();
+        Album rootAlbum = organizer.getRootAlbum();
+        Album subAlbum = new Album("Sub Album", rootAlbum);
+        Album otherAlbum = new Album("Other Album", rootAlbum);
+        SoundClip soundClip = new SoundClip(new File("../testFiles/test.txt"), "Test");
+        organizer.addSoundClip(soundClip, rootAlbum);
+        organizer.addSoundClip(soundClip, subAlbum);
+        otherAlbum.addSoundClip(soundClip);
+        assertTrue(organizer.isSoundClipFound(soundClip, otherAlbum));
+        otherAlbum.removeSoundClip(soundClip);
+        assertFalse(organizer.isSoundClipFound(soundClip, otherAlbum));
+        assertTrue(organizer.isSoundClipFound(soundClip, subAlbum));
+    }
 }
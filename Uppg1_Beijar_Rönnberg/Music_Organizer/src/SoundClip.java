@@ -1,13 +1,20 @@
 import java.io.File;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 /**
  * SoundClip is a class representing a digital
  * sound clip file on disk.
+ *
+ * Every sound clip also knows which albums hold it. Albums keep
+ * this up to date when clips are added to or removed from them.
  */
 public class SoundClip {
 
 	private final File file;
     private final String title;
+    private final Set<Album> albums = Collections.newSetFromMap(new IdentityHashMap<>());
 	
 	/**
 	 * Make a SoundClip from a file.
@@ -33,6 +40,23 @@ public class SoundClip {
 	public File getFile() {
 		return file;
 	}
+
+    /**
+     * @return the albums holding this sound clip.
+     */
+    public Set<Album> getAlbums() {
+        return Collections.unmodifiableSet(albums);
+    }
+
+    // Called by Album when the clip is added to it
+    void addedTo(Album album) {
+        albums.add(album);
+    }
+
+    // Called by Album when the clip is removed from it
+    void removedFrom(Album album) {
+        albums.remove(album);
+    }
 	
 	public String toString(){
 		return title;
@@ -0,0 +1,179 @@
+package controller;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+
+/**
+ * IoTaskExecutor runs blocking file work, such as loading the library or
+ * saving a hierarchy, off the JavaFX thread.
+ *
+ * On JDK 21 and later every task gets its own virtual thread. On older
+ * JDKs the tasks run on a pool of daemon threads instead.
+ *
+ * The result of a task, or the exception it threw, is handed back on the
+ * JavaFX thread. Once a task has been cancelled its callbacks are never
+ * called, so the user interface does not have to check for stale results.
+ */
+public class IoTaskExecutor {
+
+	private final ExecutorService executor;
+	private final boolean virtual;
+	private final Set<Task> running = ConcurrentHashMap.newKeySet();
+	private volatile boolean shutdown = false;
+
+	/**
+	 * Blocking work that returns a result.
+	 */
+	public interface Work<T> {
+		T call() throws Exception;
+	}
+
+	public IoTaskExecutor() {
+		ExecutorService virtualExecutor = createVirtualExecutor();
+		virtual = virtualExecutor != null;
+		if (virtual) {
+			executor = virtualExecutor;
+		} else {
+			AtomicInteger count = new AtomicInteger();
+			executor = Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(r, "IoTask-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+
+	// Returns Executors.newVirtualThreadPerTaskExecutor() if this JDK has it,
+	// looked up by reflection so that the program still runs on older JDKs.
+	private static ExecutorService createVirtualExecutor() {
+		try {
+			Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) m.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return true if tasks run on virtual threads.
+	 */
+	public boolean usesVirtualThreads() {
+		return virtual;
+	}
+
+	/**
+	 * Runs work in the background. When it is done, onDone is called with
+	 * its result, or onError with the exception it threw, on the JavaFX
+	 * thread. Either callback may be null.
+	 * @param name the name of the task, shown in error messages
+	 * @return the task, which can be cancelled
+	 */
+	public <T> Task submit(String name, Work<T> work, Consumer<? super T> onDone, Consumer<Exception> onError) {
+		Task task = new Task(name);
+		if (shutdown) {
+			task.cancelled = true;
+			return task;
+		}
+		running.add(task);
+		task.future = executor.submit((Callable<Void>) () -> {
+			try {
+				T result = work.call();
+				if (onDone != null) deliver(task, () -> onDone.accept(result));
+			} catch (Exception e) {
+				if (task.isCancelled()) return null; // interrupted by cancel, nobody is waiting
+				if (onError != null) {
+					deliver(task, () -> onError.accept(e));
+				} else {
+					System.out.println(name + " failed: " + e.getMessage());
+					e.printStackTrace();
+				}
+			} finally {
+				running.remove(task);
+			}
+			return null;
+		});
+		return task;
+	}
+
+	/**
+	 * Runs work in the background, like submit, for work without a result.
+	 */
+	public Task run(String name, Work<?> work, Runnable onDone, Consumer<Exception> onError) {
+		return submit(name, work, onDone == null ? null : result -> onDone.run(), onError);
+	}
+
+	/**
+	 * Cancels every task that has not finished yet.
+	 */
+	public void cancelAll() {
+		for (Task task : running) {
+			task.cancel();
+		}
+	}
+
+	/**
+	 * Cancels all tasks and stops accepting new ones.
+	 */
+	public void shutdown() {
+		shutdown = true;
+		cancelAll();
+		executor.shutdownNow();
+	}
+
+	// Calls callback on the JavaFX thread, unless the task is cancelled by then
+	private void deliver(Task task, Runnable callback) {
+		if (task.isCancelled()) return;
+		Platform.runLater(() -> {
+			if (!task.isCancelled()) callback.run();
+		});
+	}
+
+	/**
+	 * Task is a handle to work submitted to an IoTaskExecutor.
+	 */
+	public static class Task {
+		private final String name;
+		private volatile Future<?> future;
+		private volatile boolean cancelled = false;
+
+		private Task(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Cancels the task. Its thread is interrupted if it is running, and
+		 * its callbacks will not be called.
+		 */
+		public void cancel() {
+			cancelled = true;
+			Future<?> f = future;
+			if (f != null) f.cancel(true);
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		/**
+		 * @return true if the task has finished or been cancelled.
+		 */
+		public boolean isDone() {
+			Future<?> f = future;
+			return cancelled || (f != null && f.isDone());
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+}
@@ -1,46 +1,114 @@
 package controller;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
+import javafx.application.Platform;
 import javafx.stage.FileChooser;
 import model.Album;
+import model.AlbumEventBus;
+import model.AlbumListener;
+import model.ClipIdSet;
+import model.ClipSearchIndex;
+import model.HierarchyFile;
 import model.SoundClip;
+import model.LibraryChangeListener;
+import model.LibraryIndex;
+import model.LibraryWatcher;
+import model.MetadataExtractor;
+import model.OrganizerMetrics;
 import model.SoundClipBlockingQueue;
 import model.SoundClipLoader;
+import model.SoundClipMixer;
 import model.SoundClipPlayer;
+import model.SoundClipScanListener;
+import model.SoundClipScanner;
 import view.MusicOrganizerWindow;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.nio.file.Path;
 
 import javafx.stage.Stage;
+import javax.sound.sampled.LineUnavailableException;
 
-public class MusicOrganizerController implements Serializable{
+public class MusicOrganizerController {
 
 	private MusicOrganizerWindow view;
 	private SoundClipBlockingQueue queue;
+	private SoundClipPlayer player;
+	private SoundClipMixer mixer; // Created the first time clips are played together
 	private Album root;
+	private SoundClipScanner scanner;
+	private volatile LibraryWatcher watcher;
+	private String libraryPath;
+	private static final String LIBRARY_EXTENSION = ".mlib"; // File extension of saved hierarchies
+	private static final long PROGRESS_INTERVAL = 1000; // Time in ms between progress messages while loading
+	private static final String METRICS_INTERVAL_PROPERTY = "musicorganizer.metrics.interval"; // seconds, 0 for no log line
+	
+	// Sound clips found by the background scan, waiting to be added on the JavaFX thread
+	private final ConcurrentLinkedQueue<SoundClip> pendingClips = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean publishScheduled = new AtomicBoolean(false);
+	private long lastProgressMessage = 0;
+	
+	// Reads durations and formats of the sound clips in the background
+	private final MetadataExtractor metadataExtractor;
+	private final AtomicBoolean metadataScheduled = new AtomicBoolean(false);
+	
+	// Runs the blocking file work, so that the JavaFX thread never waits for the disk
+	private final IoTaskExecutor io = new IoTaskExecutor();
+	private IoTaskExecutor.Task loadTask;
+	
+	// Held for writing by the JavaFX thread while it changes the album
+	// hierarchy, and for reading while another thread copies it, e.g. to save it
+	private final ReadWriteLock hierarchyLock = new ReentrantReadWriteLock();
+	
+	// Tells the open windows about changes to their albums, once per UI pulse
+	private final AlbumEventBus albumEvents = new AlbumEventBus(Platform::runLater);
+	
+	// Finds sound clips by name, kept up to date as clips are loaded and removed
+	private final ClipSearchIndex searchIndex = new ClipSearchIndex();
 	
 	public MusicOrganizerController() {
 		root = new Album("All Sound Clips");
 		
+		metadataExtractor = new MetadataExtractor(batch -> {
+			// Refresh the view at most once per UI pulse
+			if (metadataScheduled.compareAndSet(false, true)) {
+				Platform.runLater(() -> {
+					metadataScheduled.set(false);
+					view.onMetadataExtracted();
+				});
+			}
+		});
+		
 		// Create the blocking queue
 		queue = new SoundClipBlockingQueue();
+		
+		OrganizerMetrics metrics = OrganizerMetrics.getInstance();
+		metrics.setQueue(queue);
+		metrics.register();
+		metrics.startLogging(Long.getLong(METRICS_INTERVAL_PROPERTY, 60));
 				
 		// Create a separate thread for the sound clip player and start it
 		
-		(new Thread(new SoundClipPlayer(queue))).start();
+		player = new SoundClipPlayer(queue);
+		Thread t = new Thread(player, "SoundClipPlayer");
+		t.setDaemon(true);
+		t.start();
 	}
 	
 	/**
@@ -49,12 +117,309 @@ public class MusicOrganizerController implements Serializable{
 	 */
 	public Set<SoundClip> loadSoundClips(String path) {
 		Set<SoundClip> clips = SoundClipLoader.loadSoundClips(path);
-		for(SoundClip clip : clips) {
-			root.addSoundClip(clip);
+		hierarchyLock.writeLock().lock();
+		try {
+			for(SoundClip clip : clips) {
+				root.addSoundClip(clip);
+			}
+		} finally {
+			hierarchyLock.writeLock().unlock();
 		}
+		searchIndex.addAll(clips);
 		return clips;
 	}
 	
+	/**
+	 * Starts loading the sound clips found in all subfolders of a path on disk
+	 * in a background thread and returns immediately. The clips are added to
+	 * the root album in batches on the JavaFX thread while the scan is running.
+	 * Folders that have not changed since the last run are read from the
+	 * library index instead of being listed again.
+	 * Requires that a view has been registered.
+	 */
+	public void loadSoundClipsInBackground(String path) {
+		cancelLoading();
+		libraryPath = path;
+		SoundClipScanner s = new SoundClipScanner();
+		scanner = s;
+		view.displayMessage("Loading sound clips from " + path + "...");
+		
+		loadTask = io.run("Loading " + path, () -> {
+			File indexFile = LibraryIndex.indexFileFor(path);
+			String absolutePath = new File(path).getAbsolutePath();
+			LibraryIndex loadedIndex;
+			try {
+				loadedIndex = LibraryIndex.load(indexFile, absolutePath);
+			} catch (IOException e) {
+				// A broken index only costs a full scan
+				Platform.runLater(() -> view.displayMessage("Ignoring unreadable library index: " + e.getMessage()));
+				loadedIndex = new LibraryIndex(absolutePath);
+			}
+			LibraryIndex index = loadedIndex;
+			s.setIndex(index);
+			OrganizerMetrics.getInstance().scanStarted();
+			s.scan(path, new SoundClipScanListener() {
+				@Override
+				public void clipsFound(List<SoundClip> clips, int totalFound) {
+					OrganizerMetrics.getInstance().clipsLoaded(clips.size());
+					pendingClips.addAll(clips);
+					// Only schedule a new publish if the previous one has run, so that
+					// all folders found during one UI pulse are added as one batch
+					if (publishScheduled.compareAndSet(false, true)) {
+						Platform.runLater(() -> publishPendingClips(totalFound));
+					}
+				}
+				
+				@Override
+				public void scanFinished(int totalFound, boolean cancelled) {
+					OrganizerMetrics.getInstance().scanFinished();
+					if (!cancelled) {
+						try {
+							index.save(indexFile);
+						} catch (IOException e) {
+							Platform.runLater(() -> view.displayMessage("Could not save library index: " + e.getMessage()));
+						}
+					}
+					Platform.runLater(() -> {
+						// Only watch if the loading was not stopped or restarted
+						// while the scan was finishing
+						if (!cancelled && scanner == s) {
+							startWatching(index);
+						}
+						publishPendingClips(totalFound);
+						// Only start on the metadata once the loading is done, so it
+						// does not compete with the scan for the disk
+						metadataExtractor.requestAll(root.getSoundClips());
+						if (cancelled) {
+							view.displayMessage("Loading cancelled after " + totalFound + " sound clips.");
+						} else {
+							view.displayMessage("Loaded " + totalFound + " sound clips.");
+						}
+					});
+				}
+			});
+			return null;
+		}, null, e -> view.displayMessage("Could not load sound clips: " + e.getMessage()));
+	}
+	
+	/**
+	 * Asks for the metadata of a sound clip to be read before that of any
+	 * other clip, e.g. because it has become visible in a list.
+	 */
+	public void requestMetadata(SoundClip clip) {
+		metadataExtractor.requestFirst(clip);
+	}
+	
+	/**
+	 * Stops the background loading of sound clips and the watching of the
+	 * library folders, if they are running.
+	 * Sound clips that have already been loaded are kept.
+	 */
+	public void cancelLoading() {
+		if (scanner != null) {
+			scanner.cancel();
+			scanner = null;
+		}
+		if (loadTask != null) {
+			loadTask.cancel();
+			loadTask = null;
+		}
+		stopWatching();
+	}
+	
+	/**
+	 * Stops all background work, e.g. when the program is closed.
+	 */
+	public void shutdown() {
+		cancelLoading();
+		io.shutdown();
+		metadataExtractor.shutdown();
+		OrganizerMetrics.getInstance().startLogging(0);
+		if (!player.shutdown(1000)) {
+			System.out.println("The sound clip player did not stop in time");
+		}
+		if (mixer != null) {
+			mixer.close();
+		}
+	}
+	
+	// Starts a thread that watches every folder in the index and applies
+	// changes on disk to the albums. Must be called on the JavaFX thread.
+	private void startWatching(LibraryIndex index) {
+		stopWatching();
+		try {
+			LibraryWatcher w = new LibraryWatcher(index, new LibraryChangeListener() {
+				@Override
+				public void libraryChanged(Set<SoundClip> added, Set<SoundClip> removed, Map<SoundClip, SoundClip> renamed, Set<Path> removedFolders) {
+					Platform.runLater(() -> applyLibraryChange(added, removed, renamed, removedFolders));
+				}
+				
+				@Override
+				public void changesLost() {
+					Platform.runLater(() -> {
+						view.displayMessage("Too many changes on disk to follow, loading the library again...");
+						loadSoundClipsInBackground(libraryPath);
+					});
+				}
+				
+				@Override
+				public void watchFailed(Map<Path, IOException> folders) {
+					Map.Entry<Path, IOException> first = folders.entrySet().iterator().next();
+					Platform.runLater(() -> view.displayMessage("Could not watch " + folders.size()
+							+ " folders for changes, e.g. " + first.getKey() + ": " + first.getValue().getMessage()));
+				}
+			});
+			watcher = w;
+			Thread t = new Thread(w, "LibraryWatcher");
+			t.setDaemon(true);
+			t.start();
+		} catch (IOException e) {
+			view.displayMessage("Could not watch the library for changes: " + e.getMessage());
+		}
+	}
+	
+	private void stopWatching() {
+		LibraryWatcher w = watcher;
+		if (w != null) {
+			w.close();
+			watcher = null;
+		}
+	}
+	
+	// Applies clips added and removed on disk to the root album and every
+	// album holding a removed clip, and gives a renamed clip's new name its
+	// place in every album that held it. Then refreshes the view once.
+	// Must be called on the JavaFX thread.
+	private void applyLibraryChange(Set<SoundClip> added, Set<SoundClip> removed, Map<SoundClip, SoundClip> renamed, Set<Path> removedFolders) {
+		Set<SoundClip> gone = new HashSet<>(removed);
+		if (!removedFolders.isEmpty()) {
+			for (SoundClip clip : root.getSoundClips()) {
+				Path clipPath = clip.getFile().toPath();
+				for (Path folder : removedFolders) {
+					if (clipPath.startsWith(folder)) {
+						gone.add(clip);
+						break;
+					}
+				}
+			}
+		}
+		
+		// Only the albums that actually hold a clip are touched
+		Map<Album, ClipIdSet> removedFrom = new IdentityHashMap<>();
+		for (SoundClip clip : gone) {
+			for (Album album : clip.getAlbums()) {
+				removedFrom.computeIfAbsent(album, a -> new ClipIdSet()).add(clip.getId());
+			}
+		}
+		Map<Album, ClipIdSet> addedTo = new IdentityHashMap<>();
+		for (Map.Entry<SoundClip, SoundClip> rename : renamed.entrySet()) {
+			SoundClip oldClip = rename.getKey();
+			SoundClip newClip = rename.getValue();
+			for (Album album : oldClip.getAlbums()) {
+				removedFrom.computeIfAbsent(album, a -> new ClipIdSet()).add(oldClip.getId());
+				addedTo.computeIfAbsent(album, a -> new ClipIdSet()).add(newClip.getId());
+			}
+		}
+		ClipIdSet addedToRoot = addedTo.computeIfAbsent(root, a -> new ClipIdSet());
+		for (SoundClip clip : added) {
+			addedToRoot.add(clip.getId());
+		}
+		for (SoundClip clip : renamed.values()) {
+			addedToRoot.add(clip.getId()); // in case the old name had not been loaded yet
+		}
+		
+		searchIndex.removeAll(gone);
+		searchIndex.removeAll(renamed.keySet());
+		searchIndex.addAll(added);
+		searchIndex.addAll(renamed.values());
+		hierarchyLock.writeLock().lock();
+		try {
+			for (Map.Entry<Album, ClipIdSet> e : removedFrom.entrySet()) {
+				albumEvents.clipsRemoved(e.getKey(), e.getKey().removeSoundClips(e.getValue()));
+			}
+			for (Map.Entry<Album, ClipIdSet> e : addedTo.entrySet()) {
+				albumEvents.clipsAdded(e.getKey(), e.getKey().addSoundClips(e.getValue()));
+			}
+		} finally {
+			hierarchyLock.writeLock().unlock();
+		}
+		metadataExtractor.requestAll(added);
+		metadataExtractor.requestAll(renamed.values());
+		
+		view.onLibraryChanged();
+		view.displayMessage(added.size() + " sound clips added, " + renamed.size() + " renamed and "
+				+ gone.size() + " removed on disk.");
+	}
+	
+	// Removes the clips from album and all albums below it, and announces
+	// the clips each album actually held.
+	private void removeFromAlbumTree(Album album, ClipIdSet clips) {
+		if (clips.isEmpty()) return;
+		albumEvents.clipsRemoved(album, album.removeSoundClips(clips));
+		for (Album subAlbum : album.getSubAlbums()) {
+			removeFromAlbumTree(subAlbum, clips);
+		}
+	}
+	
+	// Adds the sound clips found so far to the root album and the view.
+	// Must be called on the JavaFX thread.
+	private void publishPendingClips(int totalFound) {
+		publishScheduled.set(false);
+		List<SoundClip> batch = new ArrayList<>();
+		SoundClip clip;
+		while ((clip = pendingClips.poll()) != null) {
+			batch.add(clip);
+		}
+		if (batch.isEmpty()) return;
+		
+		ClipIdSet added;
+		hierarchyLock.writeLock().lock();
+		try {
+			added = root.addSoundClips(new ClipIdSet(batch));
+		} finally {
+			hierarchyLock.writeLock().unlock();
+		}
+		searchIndex.addAll(batch);
+		view.onClipsLoaded(root, batch);
+		albumEvents.clipsAdded(root, added);
+		
+		long now = System.currentTimeMillis();
+		if (now - lastProgressMessage >= PROGRESS_INTERVAL) {
+			lastProgressMessage = now;
+			view.displayMessage("Loading... " + totalFound + " sound clips found");
+		}
+	}
+	
+	/**
+	 * Returns the albums that hold a sound clip
+	 */
+	public List<Album> getAlbumsContaining(SoundClip clip) {
+		return clip.getAlbums();
+	}
+	
+	/**
+	 * Returns the index used to find sound clips by name
+	 */
+	public ClipSearchIndex getSearchIndex() {
+		return searchIndex;
+	}
+	
+	/**
+	 * Registers listener to be told on the JavaFX thread about changes to
+	 * album. The listener is only held weakly, so the caller must keep it
+	 * reachable, e.g. from the window it updates.
+	 */
+	public void addAlbumListener(Album album, AlbumListener listener) {
+		albumEvents.addListener(album, listener);
+	}
+	
+	/**
+	 * Stops telling listener about changes to album.
+	 */
+	public void removeAlbumListener(Album album, AlbumListener listener) {
+		albumEvents.removeListener(album, listener);
+	}
+	
 	public void registerView(MusicOrganizerWindow view) {
 		this.view = view;
 	}
@@ -84,8 +449,14 @@ public class MusicOrganizerController implements Serializable{
 		for (Album a : getRootAlbum().getSubAlbums()) {
 			System.out.println(a.toString());
 		}
-		Album newAlbum = new Album(name, parent);
-		view.onAlbumAdded(parent, newAlbum);
+		Album newAlbum;
+		hierarchyLock.writeLock().lock();
+		try {
+			newAlbum = new Album(name, parent);
+		} finally {
+			hierarchyLock.writeLock().unlock();
+		}
+		albumEvents.albumAdded(newAlbum); // the tree shows it once the event is delivered
 	}
 	
 	/**
@@ -102,14 +473,17 @@ public class MusicOrganizerController implements Serializable{
 			view.displayMessage("Cannot delete the root album.");
 			return;
 		}
-		parent.removeSubAlbum(album);
-		view.onAlbumRemoved(album);
-		album.markAsChanged();
-		album.notifyObservers("albumRemoved");
+		hierarchyLock.writeLock().lock();
+		try {
+			parent.removeSubAlbum(album);
+		} finally {
+			hierarchyLock.writeLock().unlock();
+		}
+		albumEvents.albumRemoved(album);
 	}
 	
 	/**
-	 * Adds sound clips to an album
+	 * Adds sound clips to an album and all its parent albums
 	 */
 	public void addSoundClips() { 
 		Album album = view.getSelectedAlbum();
@@ -117,32 +491,22 @@ public class MusicOrganizerController implements Serializable{
 			view.displayMessage("Please select an album to add sound clips to.");
 			return;
 		}
-		List<SoundClip> clips = view.getSelectedSoundClips();
+		ClipIdSet clips = new ClipIdSet(view.getSelectedSoundClips());
 		
-		for (SoundClip clip : clips) {
-			addClipToAlbumAndParents(album, clip); // Add the clip to the album and all its parent albums
+		// Union the clips into the album and every album above it
+		hierarchyLock.writeLock().lock();
+		try {
+			for (Album a = album; a != null; a = a.getParentAlbum()) {
+				albumEvents.clipsAdded(a, a.addSoundClips(clips));
+			}
+		} finally {
+			hierarchyLock.writeLock().unlock();
 		}
-		
-		album.markAsChanged();
-		album.notifyObservers("clipsUpdated");
 		view.onClipsUpdated();
 	}
 	
 	/**
-	 * Helper method to add a sound clip to an album and all its parent albums
-	 */
-	private void addClipToAlbumAndParents(Album album, SoundClip clip) {
-		if (album == null) return;
-		
-		// Add the clip to the current album
-		album.addSoundClip(clip);
-		
-		// Recurse up to add the clip to parent albums
-		addClipToAlbumAndParents(album.getParentAlbum(), clip);
-	}
-	
-	/**
-	 * Removes sound clips from an album
+	 * Removes sound clips from an album and all its sub-albums
 	 */
 	public void removeSoundClips(){ 
 		Album album = view.getSelectedAlbum();
@@ -150,15 +514,13 @@ public class MusicOrganizerController implements Serializable{
 			view.displayMessage("Please select an album to remove sound clips from.");
 			return;
 		}
-		List<SoundClip> clips = view.getSelectedSoundClips();
-		HashSet<Album> subAlbums = album.getSubAlbums();
-		for (Album subAlbum : subAlbums) {
-			for(SoundClip clip : clips) {
-				subAlbum.removeSoundClip(clip);
-			}
+		ClipIdSet clips = new ClipIdSet(view.getSelectedSoundClips());
+		hierarchyLock.writeLock().lock();
+		try {
+			removeFromAlbumTree(album, clips);
+		} finally {
+			hierarchyLock.writeLock().unlock();
 		}
-		album.markAsChanged();
-		album.notifyObservers("clipsUpdated");
 		view.onClipsUpdated();
 	}
 	
@@ -166,17 +528,82 @@ public class MusicOrganizerController implements Serializable{
 	 * Puts the selected sound clips on the queue and lets
 	 * the sound clip player thread play them. Essentially, when
 	 * this method is called, the selected sound clips in the 
-	 * SoundClipTable are played.
+	 * SoundClipTable are played. If the queue is full, the clips
+	 * are not played and the user is told to wait.
 	 */
 	public void playSoundClips(List<SoundClip> l){
-		queue.enqueue(l);
+		// Never block the JavaFX thread waiting for room in the queue
+		if (!queue.offer(l)) {
+			view.displayMessage("Too many sound clips waiting to be played, please wait.");
+			return;
+		}
 		for(int i=0;i<l.size();i++) {
 			view.displayMessage("Playing " + l.get(i));
 		}
-		// play the soundclip
-		Media media = new Media(l.get(0).getFile().toURI().toString());
-		MediaPlayer mediaPlayer = new MediaPlayer(media);
-		mediaPlayer.play();
+	}
+
+	/**
+	 * Plays the sound clips all at the same time, on top of whatever the
+	 * mixer is already playing. The clips are decoded in the background.
+	 */
+	public void playTogether(List<SoundClip> l) {
+		if (l.isEmpty()) return;
+		if (mixer == null) {
+			SoundClipMixer m = new SoundClipMixer();
+			try {
+				m.start();
+			} catch (LineUnavailableException | IllegalArgumentException e) {
+				view.displayMessage("Cannot play sound clips together: " + e.getMessage());
+				return;
+			}
+			mixer = m;
+		}
+		SoundClipMixer m = mixer;
+		List<SoundClip> clips = new ArrayList<>(l);
+		io.submit("Mixing sound clips", () -> {
+			int started = 0;
+			for (SoundClip clip : clips) {
+				if (m.play(clip, 1f) >= 0) started++;
+			}
+			return started;
+		}, started -> {
+			if (started < clips.size()) {
+				view.displayMessage("Playing " + started + " of " + clips.size() + " sound clips together; the rest could not be played");
+			} else {
+				view.displayMessage("Playing " + started + " sound clips together");
+			}
+		}, null);
+	}
+	
+	/**
+	 * Pauses the sound clip that is playing, or continues it if it is paused
+	 */
+	public void pauseOrResume() {
+		if (player.getState() == SoundClipPlayer.State.PAUSED) {
+			player.resume();
+			view.displayMessage("Playing again");
+		} else if (player.getState() == SoundClipPlayer.State.PLAYING) {
+			player.pause();
+			view.displayMessage("Paused");
+		}
+	}
+	
+	/**
+	 * Skips to the next sound clip waiting to be played
+	 */
+	public void skipSoundClip() {
+		player.skip();
+	}
+	
+	/**
+	 * Stops playing and forgets all sound clips waiting to be played
+	 */
+	public void stopPlaying() {
+		player.stop();
+		if (mixer != null) {
+			mixer.stopAll();
+		}
+		view.displayMessage("Stopped playing");
 	}
 
 	/**
@@ -185,107 +612,128 @@ public class MusicOrganizerController implements Serializable{
 	public void saveAs(Stage primaryStage) {
 		FileChooser fileChooser = new FileChooser();
 		fileChooser.setTitle("Save As");
-		fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("HTML", "*.html"), new FileChooser.ExtensionFilter("Searialize", "*.ser")); // only allow saving as HTML or .ser files
+		fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("HTML", "*.html"), new FileChooser.ExtensionFilter("Music Library", "*" + LIBRARY_EXTENSION)); // only allow saving as HTML or library files
 		File file = fileChooser.showSaveDialog(primaryStage);
-		String fileExtension = file.getName().substring(file.getName().lastIndexOf("."));
 		if (file != null) {
+			String fileExtension = file.getName().substring(file.getName().lastIndexOf("."));
 			if (fileExtension.equals(".html")) {
-				file = createHtml(root, file);
-				view.displayMessage("Successfully saved hierarchy to " + file.getName());
-			} else if (fileExtension.equals(".ser")) {
+				Album album = root;
+				File target = file;
+				view.displayMessage("Saving hierarchy to " + target.getName() + "...");
+				io.run("Saving " + target.getName(), () -> createHtml(copyHierarchy(album), target),
+						() -> view.displayMessage("Successfully saved hierarchy to " + target.getName()),
+						e -> view.displayMessage("Could not save " + target.getName() + ": " + e.getMessage()));
+			} else if (fileExtension.equals(LIBRARY_EXTENSION)) {
 				saveHierarchy(file);
-				view.displayMessage("Successfully saved hierarchy to " + file.getName());
 			} else {
-				view.displayMessage("Invalid file type. Please save as HTML or JSON.");
+				view.displayMessage("Invalid file type. Please save as HTML or " + LIBRARY_EXTENSION + ".");
 			}
 		}
 	}
 
 	/**
-	 * Saves the Music Organizer hierarchy to a .ser file
+	 * Saves the Music Organizer hierarchy to a library file in the background
 	 * @param file
 	 */
 	public void saveHierarchy(File file) {
-		try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
-			out.writeObject(root);
-		} catch (IOException e) {
-			e.printStackTrace();
+		Album album = root;
+		view.displayMessage("Saving hierarchy to " + file.getName() + "...");
+		io.run("Saving " + file.getName(), () -> {
+			HierarchyFile.save(copyHierarchy(album), file);
+			return null;
+		}, () -> view.displayMessage("Successfully saved hierarchy to " + file.getName()),
+				e -> view.displayMessage("Could not save " + file.getName() + ": " + e.getMessage()));
+	}
+	
+	// Copies the hierarchy below album on the calling thread, which must not
+	// be the JavaFX thread. The JavaFX thread only waits if it changes the
+	// albums while they are being copied, and the file is written from the
+	// copy, so the albums can keep changing meanwhile.
+	private Album copyHierarchy(Album album) {
+		hierarchyLock.readLock().lock();
+		try {
+			return album.snapshot();
+		} finally {
+			hierarchyLock.readLock().unlock();
 		}
 	}
 
 	/**
-	 * Loads a Music Organizer hierarchy from a .ser file
+	 * Loads a Music Organizer hierarchy from a library file
 	 */
 	public void loadHierarchy() {
 		FileChooser fileChooser = new FileChooser();
 		fileChooser.setTitle("Load Hierarchy");
-		fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("Searialize", "*.ser")); // only allow loading .ser files 
+		fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("Music Library", "*" + LIBRARY_EXTENSION, "*.ser")); // only allow loading library files, or .ser files from earlier versions
 		File file = fileChooser.showOpenDialog(null);
 		if (file != null) {
 			view.displayMessage("Loading hierarchy from " + file.getName());
-			try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
-				root = (Album) in.readObject();
+			io.submit("Loading " + file.getName(), () -> HierarchyFile.load(file), loaded -> {
+				root.detachSoundClips(); // the old hierarchy no longer holds any clips
+				albumEvents.albumRemoved(root);
+				loaded.attachSoundClips();
+				searchIndex.addAll(loaded.getSoundClips()); // in case the hierarchy holds clips outside the library
+				root = loaded;
 				view.updateTreeView(root);
 				view.onClipsUpdated();
 				view.displayMessage("Successfully loaded hierarchy from " + file.getName());
-			} catch (IOException | ClassNotFoundException e) {
+			}, e -> {
+				view.displayMessage("Could not load hierarchy: " + e.getMessage());
 				e.printStackTrace();
-			}
+			});
 		}
 	}
 
 	/**
-	 * Creates an HTML file from the Music Organizer
+	 * Creates an HTML file from the Music Organizer. The template and the
+	 * album hierarchy are streamed straight into the file, so the document
+	 * is never held in memory as a whole.
 	 * @param rootAlbum
 	 * @param file
 	 * @return the created HTML file
+	 * @throws IOException if the template cannot be read or the file cannot be written
 	 */
-	public File createHtml(Album rootAlbum, File file){
-		String html = createAlbumHTML(rootAlbum);
+	public File createHtml(Album rootAlbum, File file) throws IOException{
 		File htmlFile = new File("htmlTemplate/template.html"); // template file
-		String htmlString = getHtmlString(htmlFile); // get the template as a string
 		String title = "Music Organizer";
-		htmlString = htmlString.replace("$title", title);
-		htmlString = htmlString.replace("$list", html); // replace the list with the album hierarchy
 		file.setWritable(true);
-		try {
-			Files.write(file.toPath(), htmlString.getBytes());
-		} catch (IOException e) {
-			e.printStackTrace();
+		try (BufferedReader template = Files.newBufferedReader(htmlFile.toPath(), StandardCharsets.UTF_8);
+				Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = template.readLine()) != null) {
+				line = line.replace("$title", title);
+				int from = 0;
+				int at;
+				while ((at = line.indexOf("$list", from)) >= 0) {
+					out.write(line, from, at - from);
+					writeAlbumHTML(rootAlbum, out); // replace the list with the album hierarchy
+					from = at + "$list".length();
+				}
+				out.write(line, from, line.length() - from);
+				out.write('\n');
+			}
 		}
 		return file;
 	}
 
 	/**
-	 * Gets the contents of an HTML file as a string
-	 * @param html
-	 * @return the contents of the HTML file as a string
-	 */
-	public String getHtmlString(File html){
-		String htmlString = "";
-		try {
-			htmlString = new String(Files.readAllBytes(html.toPath()));
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		return htmlString;
-	}
-
-	/**
-	 * Creates an HTML representation of the album hierarchy
+	 * Writes an HTML representation of the album hierarchy
 	 * @param album
-	 * @return the HTML representation of the album hierarchy
+	 * @param out the writer the HTML is written to
 	 */
-	public String createAlbumHTML(Album album){
-		String html = "<ul>"; // start the list
+	public void writeAlbumHTML(Album album, Writer out) throws IOException{
+		out.write("<ul>"); // start the list
 		for (Album subAlbum : album.getSubAlbums()){
-			html += "<li><b>" + subAlbum.toString() + "</b></li>"; // for every subalbum, add a list item
-			html += createAlbumHTML(subAlbum); // recursively add the subalbum's subalbums
+			out.write("<li><b>");
+			out.write(subAlbum.toString()); // for every subalbum, add a list item
+			out.write("</b></li>");
+			writeAlbumHTML(subAlbum, out); // recursively add the subalbum's subalbums
 		}
 		for (SoundClip clip : album.getSoundClips()){
-			html += "<li>" + clip.toString() + "</li>"; // for every soundclip, add a list item
+			out.write("<li>");
+			out.write(clip.toString()); // for every soundclip, add a list item
+			out.write("</li>");
 		}
-		html += "</ul>"; // end the list
-		return html;
+		out.write("</ul>"); // end the list
 	}
 }
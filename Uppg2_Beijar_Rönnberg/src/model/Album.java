@@ -1,22 +1,34 @@
 package model;
 
-import java.io.Serializable;
+import java.util.AbstractSet;
 import java.util.HashSet;
-import java.util.Observable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * Album is a class representing a collection of
  * sound clips and sub-albums.
+ *
+ * The sound clips are stored by id in a ClipIdSet, and looked up
+ * in SoundClipRegistry when they are read. Every change to the
+ * sound clips is also recorded in the clips themselves, so that
+ * SoundClip.getAlbums() can tell which albums hold a clip.
+ *
+ * Changes to an album are announced through an AlbumEventBus by
+ * whoever makes them; the album itself has no listeners.
  */
-public class Album extends Observable implements Serializable{
+public class Album {
     private final String title;
     private final Album parentAblum;
     private HashSet<Album> subAlbums = new HashSet<>();
-    private HashSet<SoundClip> soundClips = new HashSet<>();
+    private final ClipIdSet soundClips;
+    private final Set<SoundClip> soundClipView = new SoundClipView();
 
     public Album(String title) {
         this.title = title;
         this.parentAblum = null;
+        this.soundClips = new ClipIdSet();
     }
 
     /**
@@ -28,17 +40,51 @@ public class Album extends Observable implements Serializable{
     public Album(String title, Album parentAblum) {
         this.title = title;
         this.parentAblum = parentAblum;
+        this.soundClips = new ClipIdSet();
         // add the album to the parent album
         parentAblum.getSubAlbums().add(this);
     }
 
+    // Makes a copy of source and its sub-albums below parent (or as a root if parent is null).
+    private Album(Album source, Album parent) {
+        this.title = source.title;
+        this.parentAblum = parent;
+        this.soundClips = new ClipIdSet(source.soundClips);
+        if (parent != null) {
+            parent.subAlbums.add(this);
+        }
+        for (Album subAlbum : source.subAlbums) {
+            new Album(subAlbum, this);
+        }
+    }
+
+    /**
+     * Make a copy of this album and every album below it, e.g. to save it
+     * from another thread while this album keeps changing. The albums must
+     * not be changed while they are copied. The copy is not listed by
+     * SoundClip.getAlbums() and should only be read.
+     *
+     * @return the copy, which has no parent album.
+     */
+    public Album snapshot() {
+        return new Album(this, null);
+    }
+
     /**
      * Add a new sub album to the parent album.
      *
      * @param soundClip
      */
     public void addSoundClip(SoundClip soundClip) {
-        soundClips.add(soundClip);
+        if (soundClips.add(soundClip.getId())) {
+            soundClip.addAlbum(this);
+        }
+    }
+
+    // Adds a sound clip without recording the album in the clip, for albums
+    // that are built on another thread and attached later.
+    void addSoundClipDetached(SoundClip soundClip) {
+        soundClips.add(soundClip.getId());
     }
 
     /**
@@ -48,7 +94,65 @@ public class Album extends Observable implements Serializable{
      * @return true if the sound clip is found in the album.
      */
     public void removeSoundClip(SoundClip soundClip) {
-        soundClips.remove(soundClip);
+        if (soundClips.remove(soundClip.getId())) {
+            soundClip.removeAlbum(this);
+        }
+    }
+
+    /**
+     * Add all the sound clips with the given ids to the album.
+     *
+     * @param ids
+     * @return the ids that were not already in the album, empty if the album did not change.
+     */
+    public ClipIdSet addSoundClips(ClipIdSet ids) {
+        ClipIdSet added = new ClipIdSet();
+        soundClips.addAll(ids, id -> {
+            SoundClipRegistry.get(id).addAlbum(this);
+            added.add(id);
+        });
+        return added;
+    }
+
+    /**
+     * Remove all the sound clips with the given ids from the album.
+     *
+     * @param ids
+     * @return the ids that were in the album, empty if the album did not change.
+     */
+    public ClipIdSet removeSoundClips(ClipIdSet ids) {
+        ClipIdSet removed = new ClipIdSet();
+        soundClips.removeAll(ids, id -> {
+            SoundClipRegistry.get(id).removeAlbum(this);
+            removed.add(id);
+        });
+        return removed;
+    }
+
+    /**
+     * Check if the sound clip is in this album or any album below it.
+     * Only the albums that hold the clip are looked at, so this takes
+     * time proportional to their number and depth, not to the size of
+     * the hierarchy.
+     *
+     * @param soundClip
+     * @return true if the sound clip is found in the album or its sub-albums.
+     */
+    public boolean containsSoundClipInTree(SoundClip soundClip) {
+        for (Album album : soundClip.getAlbums()) {
+            for (Album a = album; a != null; a = a.getParentAlbum()) {
+                if (a == this) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param soundClip
+     * @return true if the sound clip is in the album.
+     */
+    public boolean containsSoundClip(SoundClip soundClip) {
+        return soundClips.contains(soundClip.getId());
     }
 
     /**
@@ -57,7 +161,32 @@ public class Album extends Observable implements Serializable{
      * @param subAlbum
      */
     public void removeSubAlbum(Album subAlbum) {
-        subAlbums.remove(subAlbum);
+        if (subAlbums.remove(subAlbum)) {
+            subAlbum.detachSoundClips();
+        }
+    }
+
+    /**
+     * Remove this album and every album below it from the albums listed by
+     * their sound clips, e.g. when the album is deleted or replaced. The
+     * albums keep their sound clips.
+     */
+    public void detachSoundClips() {
+        soundClips.forEach(id -> SoundClipRegistry.get(id).removeAlbum(this));
+        for (Album subAlbum : subAlbums) {
+            subAlbum.detachSoundClips();
+        }
+    }
+
+    /**
+     * Record this album and every album below it in their sound clips, so
+     * that SoundClip.getAlbums() lists them. Undoes detachSoundClips().
+     */
+    public void attachSoundClips() {
+        soundClips.forEach(id -> SoundClipRegistry.get(id).addAlbum(this));
+        for (Album subAlbum : subAlbums) {
+            subAlbum.attachSoundClips();
+        }
     }
 
     /**
@@ -91,14 +220,18 @@ public class Album extends Observable implements Serializable{
     }
 
     /**
-     * @return the sound clips in the album.
+     * @return a read-only view of the sound clips in the album. The view
+     * follows later changes to the album.
      */
-    public HashSet<SoundClip> getSoundClips() {
-        return soundClips;
+    public Set<SoundClip> getSoundClips() {
+        return soundClipView;
     }
 
-    public void markAsChanged() {
-        setChanged();
+    /**
+     * @return a copy of the ids of the sound clips in the album.
+     */
+    public ClipIdSet getSoundClipIds() {
+        return new ClipIdSet(soundClips);
     }
 
     /**
@@ -117,4 +250,41 @@ public class Album extends Observable implements Serializable{
     public boolean equals(Object obj) {
         return obj instanceof Album && ((Album) obj).title.equals(title);
     }
+
+    /**
+     * SoundClipView shows the ids in soundClips as a set of sound clips,
+     * without copying them.
+     */
+    private class SoundClipView extends AbstractSet<SoundClip> {
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof SoundClip && soundClips.contains(((SoundClip) o).getId());
+        }
+
+        @Override
+        public int size() {
+            return soundClips.size();
+        }
+
+        @Override
+        public Iterator<SoundClip> iterator() {
+            return new Iterator<SoundClip>() {
+                private int next = soundClips.nextId(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public SoundClip next() {
+                    if (next < 0) throw new NoSuchElementException();
+                    SoundClip clip = SoundClipRegistry.get(next);
+                    next = soundClips.nextId(next + 1);
+                    return clip;
+                }
+            };
+        }
+    }
 }
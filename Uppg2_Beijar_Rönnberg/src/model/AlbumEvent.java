@@ -0,0 +1,138 @@
+package model;
+
+import java.util.List;
+
+/**
+ * AlbumEvent describes one change to an album. The events are sent to
+ * AlbumListeners by an AlbumEventBus.
+ *
+ * The ClipIdSets in the events are shared by every listener, so they
+ * should only be read.
+ */
+public abstract class AlbumEvent {
+
+	private final Album album;
+
+	AlbumEvent(Album album) {
+		this.album = album;
+	}
+
+	/**
+	 * @return the album that changed.
+	 */
+	public Album getAlbum() {
+		return album;
+	}
+
+	/**
+	 * Sound clips were added to the album.
+	 */
+	public static class ClipsAdded extends AlbumEvent {
+		private final ClipIdSet clips;
+
+		ClipsAdded(Album album, ClipIdSet clips) {
+			super(album);
+			this.clips = clips;
+		}
+
+		/**
+		 * @return the ids of the clips that were added.
+		 */
+		public ClipIdSet getClips() {
+			return clips;
+		}
+
+		@Override
+		public String toString() {
+			return "ClipsAdded[" + getAlbum() + ", " + clips.size() + " clips]";
+		}
+	}
+
+	/**
+	 * Sound clips were removed from the album.
+	 */
+	public static class ClipsRemoved extends AlbumEvent {
+		private final ClipIdSet clips;
+
+		ClipsRemoved(Album album, ClipIdSet clips) {
+			super(album);
+			this.clips = clips;
+		}
+
+		/**
+		 * @return the ids of the clips that were removed.
+		 */
+		public ClipIdSet getClips() {
+			return clips;
+		}
+
+		@Override
+		public String toString() {
+			return "ClipsRemoved[" + getAlbum() + ", " + clips.size() + " clips]";
+		}
+	}
+
+	/**
+	 * Sub-albums were added to the album.
+	 */
+	public static class SubAlbumsAdded extends AlbumEvent {
+		private final List<Album> subAlbums;
+
+		SubAlbumsAdded(Album album, List<Album> subAlbums) {
+			super(album);
+			this.subAlbums = subAlbums;
+		}
+
+		/**
+		 * @return the albums that were added.
+		 */
+		public List<Album> getSubAlbums() {
+			return subAlbums;
+		}
+
+		@Override
+		public String toString() {
+			return "SubAlbumsAdded[" + getAlbum() + ", " + subAlbums + "]";
+		}
+	}
+
+	/**
+	 * Sub-albums were removed from the album. Each of them also gets an
+	 * AlbumRemoved of its own.
+	 */
+	public static class SubAlbumsRemoved extends AlbumEvent {
+		private final List<Album> subAlbums;
+
+		SubAlbumsRemoved(Album album, List<Album> subAlbums) {
+			super(album);
+			this.subAlbums = subAlbums;
+		}
+
+		/**
+		 * @return the albums that were removed.
+		 */
+		public List<Album> getSubAlbums() {
+			return subAlbums;
+		}
+
+		@Override
+		public String toString() {
+			return "SubAlbumsRemoved[" + getAlbum() + ", " + subAlbums + "]";
+		}
+	}
+
+	/**
+	 * The album was removed from the hierarchy. No more events are sent
+	 * for it after this one.
+	 */
+	public static class AlbumRemoved extends AlbumEvent {
+		AlbumRemoved(Album album) {
+			super(album);
+		}
+
+		@Override
+		public String toString() {
+			return "AlbumRemoved[" + getAlbum() + "]";
+		}
+	}
+}
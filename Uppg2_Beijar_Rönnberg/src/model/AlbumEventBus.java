@@ -0,0 +1,239 @@
+package model;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * AlbumEventBus sends changes to albums, to their sound clips or their
+ * sub-albums, to the listeners registered for them.
+ *
+ * Changes are collected until the next delivery, and all changes made to
+ * one album in between are sent as one call, so adding clips to an album
+ * a thousand times gives each listener a single ClipsAdded with every
+ * clip in it. One delivery is run on the executor for every batch, e.g.
+ * on the JavaFX thread with Platform::runLater, which makes a batch of
+ * everything that changed during one UI pulse.
+ *
+ * Listeners should be removed when they are no longer needed, e.g. when
+ * their window is closed. As a safety net they are also held through
+ * weak references, so a window that is thrown away without removing its
+ * listener does not stay in memory, and the entries of listeners that
+ * have been garbage collected are dropped the next time the bus is used.
+ * Whoever registers a listener must therefore keep it reachable for as
+ * long as it should be called.
+ *
+ * Changes may be announced from any thread.
+ */
+public class AlbumEventBus {
+
+	private final Executor executor;
+	private final Map<Album, List<ListenerRef>> listeners = new IdentityHashMap<>(); // guarded by this
+	private final ReferenceQueue<AlbumListener> collected = new ReferenceQueue<>();
+	private Map<Album, Pending> pending = new IdentityHashMap<>(); // guarded by this
+	private boolean deliveryScheduled = false; // guarded by this
+
+	// A weak reference to a listener that remembers the album it listens to,
+	// so that it can be found and dropped once the listener is collected
+	private static class ListenerRef extends WeakReference<AlbumListener> {
+		final Album album;
+
+		ListenerRef(Album album, AlbumListener listener, ReferenceQueue<AlbumListener> queue) {
+			super(listener, queue);
+			this.album = album;
+		}
+	}
+
+	// The changes to one album since the last delivery
+	private static class Pending {
+		final ClipIdSet added = new ClipIdSet();
+		final ClipIdSet removed = new ClipIdSet();
+		final Set<Album> subAlbumsAdded = Collections.newSetFromMap(new IdentityHashMap<>());
+		final Set<Album> subAlbumsRemoved = Collections.newSetFromMap(new IdentityHashMap<>());
+		boolean albumRemoved = false;
+	}
+
+	/**
+	 * @param executor runs the deliveries, and so decides which thread
+	 * the listeners are called on
+	 */
+	public AlbumEventBus(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Registers listener to be told about changes to album.
+	 */
+	public synchronized void addListener(Album album, AlbumListener listener) {
+		purge();
+		listeners.computeIfAbsent(album, a -> new ArrayList<>()).add(new ListenerRef(album, listener, collected));
+	}
+
+	/**
+	 * Stops telling listener about changes to album.
+	 */
+	public synchronized void removeListener(Album album, AlbumListener listener) {
+		purge();
+		List<ListenerRef> list = listeners.get(album);
+		if (list == null) return;
+		list.removeIf(ref -> ref.get() == listener);
+		if (list.isEmpty()) {
+			listeners.remove(album);
+		}
+	}
+
+	/**
+	 * @return the number of listeners registered, counting those that
+	 * have been collected but not yet dropped.
+	 */
+	public synchronized int getListenerCount() {
+		purge();
+		int count = 0;
+		for (List<ListenerRef> list : listeners.values()) {
+			count += list.size();
+		}
+		return count;
+	}
+
+	// Drops the entries of listeners that have been garbage collected
+	private void purge() {
+		Reference<? extends AlbumListener> r;
+		while ((r = collected.poll()) != null) {
+			ListenerRef ref = (ListenerRef) r;
+			List<ListenerRef> list = listeners.get(ref.album);
+			if (list != null && list.remove(ref) && list.isEmpty()) {
+				listeners.remove(ref.album);
+			}
+		}
+	}
+
+	/**
+	 * Announces that the clips with the given ids were added to album.
+	 */
+	public synchronized void clipsAdded(Album album, ClipIdSet ids) {
+		if (ids.isEmpty()) return;
+		Pending p = pendingFor(album);
+		// Clips that were removed since the last delivery are simply back
+		ClipIdSet added = new ClipIdSet(ids);
+		added.removeAll(p.removed);
+		p.removed.removeAll(ids);
+		p.added.addAll(added);
+	}
+
+	/**
+	 * Announces that the clips with the given ids were removed from album.
+	 */
+	public synchronized void clipsRemoved(Album album, ClipIdSet ids) {
+		if (ids.isEmpty()) return;
+		Pending p = pendingFor(album);
+		// Clips that were added since the last delivery were never seen
+		ClipIdSet removed = new ClipIdSet(ids);
+		removed.removeAll(p.added);
+		p.added.removeAll(ids);
+		p.removed.addAll(removed);
+	}
+
+	/**
+	 * Announces that album was added to its parent album.
+	 */
+	public synchronized void albumAdded(Album album) {
+		Album parent = album.getParentAlbum();
+		if (parent != null) {
+			pendingFor(parent).subAlbumsAdded.add(album);
+		}
+	}
+
+	/**
+	 * Announces that album, and with it every album below it, was removed
+	 * from the hierarchy. Its parent album is told that it lost a sub-album.
+	 */
+	public synchronized void albumRemoved(Album album) {
+		Album parent = album.getParentAlbum();
+		if (parent != null) {
+			Pending p = pendingFor(parent);
+			// An album that was added since the last delivery was never seen
+			if (!p.subAlbumsAdded.remove(album)) {
+				p.subAlbumsRemoved.add(album);
+			}
+		}
+		markRemoved(album);
+	}
+
+	private void markRemoved(Album album) {
+		pendingFor(album).albumRemoved = true;
+		for (Album subAlbum : album.getSubAlbums()) {
+			markRemoved(subAlbum);
+		}
+	}
+
+	// Returns the pending changes for album, and schedules a delivery if none is
+	private Pending pendingFor(Album album) {
+		if (!deliveryScheduled) {
+			deliveryScheduled = true;
+			executor.execute(this::deliver);
+		}
+		return pending.computeIfAbsent(album, a -> new Pending());
+	}
+
+	// Sends every pending change to the listeners. Runs on the executor.
+	private void deliver() {
+		Map<Album, Pending> batch;
+		Map<Album, List<AlbumListener>> targets = new IdentityHashMap<>();
+		synchronized (this) {
+			batch = pending;
+			pending = new IdentityHashMap<>();
+			deliveryScheduled = false;
+			purge();
+			for (Album album : batch.keySet()) {
+				List<AlbumListener> live = liveListeners(album);
+				if (!live.isEmpty()) targets.put(album, live);
+				if (batch.get(album).albumRemoved) {
+					listeners.remove(album);
+				}
+			}
+		}
+		// The listeners are called without holding the lock, so they may
+		// register listeners or announce changes themselves
+		for (Map.Entry<Album, List<AlbumListener>> target : targets.entrySet()) {
+			Album album = target.getKey();
+			List<AlbumEvent> events = toEvents(album, batch.get(album));
+			if (events.isEmpty()) continue;
+			for (AlbumListener listener : target.getValue()) {
+				try {
+					listener.albumChanged(events);
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private List<AlbumListener> liveListeners(Album album) {
+		List<AlbumListener> live = new ArrayList<>();
+		List<ListenerRef> list = listeners.get(album);
+		if (list != null) {
+			for (ListenerRef ref : list) {
+				AlbumListener listener = ref.get();
+				if (listener != null) live.add(listener);
+			}
+		}
+		return live;
+	}
+
+	private static List<AlbumEvent> toEvents(Album album, Pending p) {
+		List<AlbumEvent> events = new ArrayList<>(5);
+		if (!p.removed.isEmpty()) events.add(new AlbumEvent.ClipsRemoved(album, p.removed));
+		if (!p.added.isEmpty()) events.add(new AlbumEvent.ClipsAdded(album, p.added));
+		if (!p.subAlbumsRemoved.isEmpty()) events.add(new AlbumEvent.SubAlbumsRemoved(album, new ArrayList<>(p.subAlbumsRemoved)));
+		if (!p.subAlbumsAdded.isEmpty()) events.add(new AlbumEvent.SubAlbumsAdded(album, new ArrayList<>(p.subAlbumsAdded)));
+		if (p.albumRemoved) events.add(new AlbumEvent.AlbumRemoved(album));
+		return events;
+	}
+}
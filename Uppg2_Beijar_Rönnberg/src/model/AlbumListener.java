@@ -0,0 +1,19 @@
+package model;
+
+import java.util.List;
+
+/**
+ * AlbumListener is told by an AlbumEventBus about changes to an album
+ * it was registered for.
+ */
+public interface AlbumListener {
+
+	/**
+	 * Called once for all the changes made to the album since the last
+	 * call, on the thread the bus delivers on. Clips that were added and
+	 * removed again in between are left out, and removals come before
+	 * additions.
+	 * @param events the changes, at most one of each kind
+	 */
+	void albumChanged(List<AlbumEvent> events);
+}
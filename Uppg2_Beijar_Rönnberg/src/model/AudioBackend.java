@@ -0,0 +1,56 @@
+package model;
+
+/**
+ * AudioBackend is the part of a SoundClipPlayer that actually makes
+ * sound. The player asks the backend to start a sound clip, may tell it
+ * which clip comes next while the current one plays, and then waits for
+ * the clip to end.
+ *
+ * All methods are called from the player thread.
+ */
+public interface AudioBackend {
+
+	/**
+	 * Starts playing clip and returns as soon as playback has begun.
+	 * @param started called once the first audio of the clip is playing,
+	 * possibly from another thread
+	 * @return false if the clip cannot be played
+	 */
+	boolean start(SoundClip clip, Runnable started);
+
+	/**
+	 * Waits for the clip given to the last successful start to end, but
+	 * at most timeoutMillis ms, so that the player can look at its
+	 * commands in between. Once the clip has ended it is released.
+	 * @return true if the clip has ended, false if it is still playing
+	 * @throws InterruptedException if the player thread is interrupted;
+	 * the clip is then left as it is
+	 */
+	boolean awaitEnd(long timeoutMillis) throws InterruptedException;
+
+	/**
+	 * Pauses the current clip, keeping its position.
+	 */
+	void pause();
+
+	/**
+	 * Continues the current clip after pause.
+	 */
+	void resume();
+
+	/**
+	 * Stops the current clip before its end and releases it.
+	 */
+	void stop();
+
+	/**
+	 * Tells the backend that clip will be started next, so that it can open
+	 * and buffer it while the current clip plays. A backend may ignore this.
+	 */
+	void prepare(SoundClip clip);
+
+	/**
+	 * Releases everything the backend holds on to.
+	 */
+	void close();
+}
@@ -0,0 +1,231 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.IntConsumer;
+
+/**
+ * ClipIdSet is a set of sound clip ids stored as a bitmap, with one bit
+ * for every id between the smallest and the largest id in the set.
+ *
+ * Only the words covering that range are allocated, so a small album
+ * whose clips have ids close to each other stays small even when the
+ * library holds hundreds of thousands of clips. Looking up an id never
+ * allocates.
+ *
+ * Whole sets are added and removed 64 ids at a time by combining words,
+ * which is what albums use to pass clips up to their parents and down
+ * to their sub-albums.
+ */
+public class ClipIdSet {
+
+	private static final long[] EMPTY = new long[0];
+
+	private long[] words = EMPTY;
+	private int firstWord = 0; // the index of the word stored in words[0]
+	private int size = 0;
+
+	/**
+	 * Make an empty set.
+	 */
+	public ClipIdSet() {
+	}
+
+	/**
+	 * Make a set holding the ids of the given sound clips.
+	 */
+	public ClipIdSet(Collection<SoundClip> clips) {
+		for (SoundClip clip : clips) {
+			add(clip.getId());
+		}
+	}
+
+	/**
+	 * Make a copy of other.
+	 */
+	public ClipIdSet(ClipIdSet other) {
+		words = other.words.length == 0 ? EMPTY : other.words.clone();
+		firstWord = other.firstWord;
+		size = other.size;
+	}
+
+	/**
+	 * Adds id to the set.
+	 * Requires id >= 0.
+	 * @return true if the id was not already in the set.
+	 */
+	public boolean add(int id) {
+		assert id >= 0;
+		int w = id >>> 6;
+		ensureWord(w);
+		int i = w - firstWord;
+		long bit = 1L << id;
+		if ((words[i] & bit) != 0) return false;
+		words[i] |= bit;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Removes id from the set.
+	 * @return true if the id was in the set.
+	 */
+	public boolean remove(int id) {
+		int i = (id >>> 6) - firstWord;
+		if (id < 0 || i < 0 || i >= words.length) return false;
+		long bit = 1L << id;
+		if ((words[i] & bit) == 0) return false;
+		words[i] &= ~bit;
+		size--;
+		return true;
+	}
+
+	/**
+	 * @return true if id is in the set.
+	 */
+	public boolean contains(int id) {
+		int i = (id >>> 6) - firstWord;
+		return id >= 0 && i >= 0 && i < words.length && (words[i] & (1L << id)) != 0;
+	}
+
+	/**
+	 * Adds every id in other to this set.
+	 * @return true if this set changed.
+	 */
+	public boolean addAll(ClipIdSet other) {
+		return addAll(other, null);
+	}
+
+	/**
+	 * Adds every id in other to this set, and calls added (if not null)
+	 * for each id that was not already in the set.
+	 * @return true if this set changed.
+	 */
+	public boolean addAll(ClipIdSet other, IntConsumer added) {
+		if (other.size == 0) return false;
+		int otherLast = other.firstWord + other.words.length - 1;
+		ensureWord(other.firstWord);
+		ensureWord(otherLast);
+		int before = size;
+		int offset = other.firstWord - firstWord;
+		for (int j = 0; j < other.words.length; j++) {
+			long old = words[j + offset];
+			long merged = old | other.words[j];
+			if (merged != old) {
+				words[j + offset] = merged;
+				size += Long.bitCount(merged) - Long.bitCount(old);
+				if (added != null) forEachBit(merged & ~old, j + offset + firstWord, added);
+			}
+		}
+		return size != before;
+	}
+
+	/**
+	 * Removes every id in other from this set.
+	 * @return true if this set changed.
+	 */
+	public boolean removeAll(ClipIdSet other) {
+		return removeAll(other, null);
+	}
+
+	/**
+	 * Removes every id in other from this set, and calls removed (if not
+	 * null) for each id that was in the set.
+	 * @return true if this set changed.
+	 */
+	public boolean removeAll(ClipIdSet other, IntConsumer removed) {
+		if (size == 0 || other.size == 0) return false;
+		int from = Math.max(firstWord, other.firstWord);
+		int to = Math.min(firstWord + words.length, other.firstWord + other.words.length);
+		int before = size;
+		for (int w = from; w < to; w++) {
+			long old = words[w - firstWord];
+			long kept = old & ~other.words[w - other.firstWord];
+			if (kept != old) {
+				words[w - firstWord] = kept;
+				size -= Long.bitCount(old) - Long.bitCount(kept);
+				if (removed != null) forEachBit(old & ~kept, w, removed);
+			}
+		}
+		return size != before;
+	}
+
+	/**
+	 * @return the number of ids in the set.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes all ids and gives the memory back.
+	 */
+	public void clear() {
+		words = EMPTY;
+		firstWord = 0;
+		size = 0;
+	}
+
+	/**
+	 * Returns the smallest id in the set that is >= from, or -1 if there is none.
+	 */
+	public int nextId(int from) {
+		if (from < 0) from = 0;
+		int i = (from >>> 6) - firstWord;
+		if (i >= words.length) return -1;
+		long word;
+		if (i < 0) {
+			i = 0;
+			word = words[0];
+		} else {
+			word = words[i] & (-1L << from);
+		}
+		while (true) {
+			if (word != 0) {
+				return ((i + firstWord) << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if (++i == words.length) return -1;
+			word = words[i];
+		}
+	}
+
+	/**
+	 * Calls action for every id in the set, in increasing order.
+	 */
+	public void forEach(IntConsumer action) {
+		for (int i = 0; i < words.length; i++) {
+			forEachBit(words[i], i + firstWord, action);
+		}
+	}
+
+	// Calls action for the id of every bit set in word, where word
+	// is the w:th word of the whole bitmap.
+	private static void forEachBit(long word, int w, IntConsumer action) {
+		while (word != 0) {
+			action.accept((w << 6) + Long.numberOfTrailingZeros(word));
+			word &= word - 1;
+		}
+	}
+
+	// Makes sure that word w is allocated, growing the array in the
+	// direction of w by at least its own length to keep adds cheap.
+	private void ensureWord(int w) {
+		if (words.length == 0) {
+			words = new long[1];
+			firstWord = w;
+		} else if (w < firstWord) {
+			int newFirst = Math.max(0, Math.min(w, firstWord - words.length));
+			long[] grown = new long[firstWord - newFirst + words.length];
+			System.arraycopy(words, 0, grown, firstWord - newFirst, words.length);
+			words = grown;
+			firstWord = newFirst;
+		} else if (w >= firstWord + words.length) {
+			int length = Math.max(w - firstWord + 1, words.length * 2);
+			words = Arrays.copyOf(words, length);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package model;
+
+/**
+ * ClipMetadata describes the file and the audio of a sound clip:
+ * its size and modification time on disk, and the format and length
+ * read from its WAV header.
+ *
+ * If the header could not be read, only the file attributes are known
+ * and hasAudioInfo() returns false.
+ */
+public class ClipMetadata {
+
+	private final long size;
+	private final long lastModified;
+	private final int formatTag;
+	private final int sampleRate;
+	private final int channels;
+	private final int bitsPerSample;
+	private final long durationMillis;
+
+	/**
+	 * Make metadata for a file whose WAV header could not be read.
+	 */
+	public ClipMetadata(long size, long lastModified) {
+		this(size, lastModified, -1, 0, 0, 0, 0);
+	}
+
+	public ClipMetadata(long size, long lastModified, int formatTag, int sampleRate, int channels, int bitsPerSample, long durationMillis) {
+		this.size = size;
+		this.lastModified = lastModified;
+		this.formatTag = formatTag;
+		this.sampleRate = sampleRate;
+		this.channels = channels;
+		this.bitsPerSample = bitsPerSample;
+		this.durationMillis = durationMillis;
+	}
+
+	/**
+	 * @return the size of the file in bytes.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the time the file was last modified, in ms since 1970.
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * @return true if the format and duration are known.
+	 */
+	public boolean hasAudioInfo() {
+		return formatTag >= 0;
+	}
+
+	/**
+	 * @return the WAV format tag, e.g. WavFile.FORMAT_PCM, or -1 if unknown.
+	 */
+	public int getFormatTag() {
+		return formatTag;
+	}
+
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	public int getBitsPerSample() {
+		return bitsPerSample;
+	}
+
+	/**
+	 * @return the length of the sound clip in ms, or 0 if unknown.
+	 */
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	/**
+	 * @return the duration as m:ss, or an empty string if unknown.
+	 */
+	public String getDurationText() {
+		if (!hasAudioInfo()) return "";
+		long seconds = (durationMillis + 500) / 1000;
+		return String.format("%d:%02d", seconds / 60, seconds % 60);
+	}
+
+	/**
+	 * @return a short description of the format, e.g. "44.1 kHz, 16 bit, stereo".
+	 */
+	public String getFormatText() {
+		if (!hasAudioInfo()) return "unknown format";
+		String ch = channels == 1 ? "mono" : channels == 2 ? "stereo" : channels + " channels";
+		return String.format("%.1f kHz, %d bit, %s", sampleRate / 1000.0, bitsPerSample, ch);
+	}
+
+	/**
+	 * @return the size as e.g. "1.2 MB".
+	 */
+	public String getSizeText() {
+		if (size < 1024) return size + " B";
+		if (size < 1024 * 1024) return String.format("%.1f KB", size / 1024.0);
+		return String.format("%.1f MB", size / (1024.0 * 1024));
+	}
+
+	@Override
+	public String toString() {
+		return getDurationText() + " " + getFormatText() + ", " + getSizeText();
+	}
+}
@@ -0,0 +1,321 @@
+package model;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ClipSearchIndex finds sound clips whose names contain a piece of text,
+ * fast enough to filter a list while the user is typing.
+ *
+ * The text searched for a clip is the name of its folder and the name of
+ * the file, e.g. "drums/kick 01.wav", in lower case. For every run of
+ * three bytes in that text (a trigram) the index keeps a list of the ids
+ * of the clips whose text contains it. A search only looks at the clips in
+ * the shortest list of any trigram of the query, and checks them against
+ * the text itself, so it costs time in proportion to the number of likely
+ * matches and not to the number of clips.
+ *
+ * To keep the index small, the texts of all clips are stored one after
+ * another in a single byte array as UTF-8, instead of as one String per
+ * clip, and the lists store the difference to the previous id in as few
+ * bytes as possible, which for common trigrams is usually one byte.
+ *
+ * Clips can be added and removed at any time, e.g. while the library is
+ * being loaded. Removed clips are only marked as removed, and the index is
+ * rebuilt once they make up half of it. All methods are synchronized.
+ */
+public class ClipSearchIndex {
+
+	private static final int TAIL_SIZE = 32; // the fewest ids added out of order that are kept before merging
+
+	private byte[] text = new byte[1024]; // the texts of all clips, one after another
+	private int textLength = 0;
+	private int[] textStart = new int[0]; // where the text of each clip id starts, -1 if not indexed
+	private int[] textEnd = new int[0];
+	private int size = 0;
+	private int removed = 0; // clips removed since the last rebuild, still in the lists
+	private Map<Integer, Postings> trigrams = new HashMap<>();
+
+	// The ids of the clips whose text contains one trigram. Ids added in
+	// increasing order are stored as varint differences in data; the few
+	// that arrive out of order wait in tail until there are enough of them
+	// to be worth merging in, which grows with the list so that adding many
+	// clips out of order, e.g. again after removing them, does not rewrite
+	// a long list for every few ids.
+	private static class Postings {
+		byte[] data = new byte[4];
+		int length = 0;
+		int last = -1; // the largest id in data
+		int count = 0; // the number of ids in data
+		int[] tail;
+		int tailCount = 0;
+
+		void add(int id) {
+			if (id > last) {
+				append(id);
+			} else if (id != last && (tailCount == 0 || id != tail[tailCount - 1])) {
+				// A text with the same trigram twice gives the same id twice in a row
+				if (tail == null) tail = new int[TAIL_SIZE];
+				if (tailCount == tail.length) tail = Arrays.copyOf(tail, tailCount * 2);
+				tail[tailCount++] = id;
+				if (tailCount >= Math.max(TAIL_SIZE, count >> 3)) merge();
+			}
+		}
+
+		// The number of ids, counting an id that is in both data and tail twice
+		int size() {
+			return count + tailCount;
+		}
+
+		// Returns every id in the list, sorted and without duplicates
+		int[] toArray() {
+			int[] ids = new int[count + tailCount];
+			int n = 0;
+			int id = 0;
+			for (int i = 0; i < length; ) {
+				int delta = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = data[i++];
+					delta |= (b & 0x7F) << shift;
+					shift += 7;
+				} while (b < 0);
+				id += delta;
+				ids[n++] = id;
+			}
+			if (tailCount == 0) return ids;
+			System.arraycopy(tail, 0, ids, n, tailCount);
+			Arrays.sort(ids);
+			// An id that was added again after it was removed is in both data and tail
+			int unique = 0;
+			for (int i = 0; i < ids.length; i++) {
+				if (unique == 0 || ids[i] != ids[unique - 1]) ids[unique++] = ids[i];
+			}
+			return unique == ids.length ? ids : Arrays.copyOf(ids, unique);
+		}
+
+		private void append(int id) {
+			int delta = last < 0 ? id : id - last;
+			if (length + 5 > data.length) {
+				data = Arrays.copyOf(data, data.length + (data.length >> 1) + 5);
+			}
+			while ((delta & ~0x7F) != 0) {
+				data[length++] = (byte) ((delta & 0x7F) | 0x80);
+				delta >>>= 7;
+			}
+			data[length++] = (byte) delta;
+			last = id;
+			count++;
+		}
+
+		// Rewrites data with the ids from tail put in their places
+		private void merge() {
+			int[] ids = toArray();
+			data = new byte[Math.max(4, length + tailCount * 2)];
+			length = 0;
+			last = -1;
+			count = 0;
+			tailCount = 0;
+			tail = null;
+			for (int id : ids) {
+				append(id);
+			}
+		}
+	}
+
+	/**
+	 * Adds the sound clips to the index. Clips that are already in it are skipped.
+	 */
+	public synchronized void addAll(Collection<SoundClip> clips) {
+		for (SoundClip clip : clips) {
+			add(clip);
+		}
+	}
+
+	/**
+	 * Adds the sound clip to the index, if it is not already in it.
+	 */
+	public synchronized void add(SoundClip clip) {
+		int id = clip.getId();
+		if (isIndexed(id)) return;
+		if (id >= textStart.length) {
+			int oldLength = textStart.length;
+			int newLength = Math.max(id + 1, oldLength * 2);
+			textStart = Arrays.copyOf(textStart, newLength);
+			textEnd = Arrays.copyOf(textEnd, newLength);
+			Arrays.fill(textStart, oldLength, newLength, -1);
+		}
+		byte[] s = searchText(clip.getFile());
+		if (textLength + s.length > text.length) {
+			text = Arrays.copyOf(text, Math.max(textLength + s.length, text.length * 2));
+		}
+		System.arraycopy(s, 0, text, textLength, s.length);
+		textStart[id] = textLength;
+		textLength += s.length;
+		textEnd[id] = textLength;
+		size++;
+		addTrigrams(id);
+	}
+
+	/**
+	 * Removes the sound clips from the index.
+	 */
+	public synchronized void removeAll(Collection<SoundClip> clips) {
+		for (SoundClip clip : clips) {
+			remove(clip);
+		}
+	}
+
+	/**
+	 * Removes the sound clip from the index, if it is in it.
+	 */
+	public synchronized void remove(SoundClip clip) {
+		int id = clip.getId();
+		if (!isIndexed(id)) return;
+		textStart[id] = -1;
+		size--;
+		removed++;
+		if (removed > size) {
+			rebuild();
+		}
+	}
+
+	/**
+	 * @return the number of sound clips in the index.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Finds the clips among within whose name or folder contains every
+	 * word of query, ignoring case. Words shorter than three bytes cannot
+	 * be looked up, so a query made only of such words checks every clip
+	 * in within.
+	 * @param query the words to look for, separated by spaces
+	 * @param within the ids of the clips to search, e.g. those of an album
+	 * @return the ids of the matching clips; a copy of within if query is blank
+	 */
+	public synchronized ClipIdSet search(String query, ClipIdSet within) {
+		String trimmed = query.trim().toLowerCase();
+		if (trimmed.isEmpty()) {
+			return new ClipIdSet(within);
+		}
+		String[] parts = trimmed.split("\\s+");
+		byte[][] words = new byte[parts.length][];
+
+		// Find the trigram with the fewest clips
+		Postings shortest = null;
+		for (int w = 0; w < parts.length; w++) {
+			words[w] = parts[w].getBytes(StandardCharsets.UTF_8);
+			for (int i = 0; i + 3 <= words[w].length; i++) {
+				Postings p = trigrams.get(trigram(words[w], i));
+				if (p == null) return new ClipIdSet(); // no clip has this trigram
+				if (shortest == null || p.size() < shortest.size()) shortest = p;
+			}
+		}
+
+		ClipIdSet result = new ClipIdSet();
+		if (shortest != null && shortest.size() < within.size()) {
+			for (int id : shortest.toArray()) {
+				if (within.contains(id) && isIndexed(id) && matches(id, words)) {
+					result.add(id);
+				}
+			}
+		} else {
+			// No word could be looked up, or within is smaller than the
+			// shortest list, so the clips in within are checked directly
+			within.forEach(id -> {
+				if (isIndexed(id) && matches(id, words)) result.add(id);
+			});
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if query has a word of at least three bytes, which can be
+	 * looked up in the index, so that searching for it does not check every clip.
+	 */
+	public static boolean canLookUp(String query) {
+		for (String word : query.trim().toLowerCase().split("\\s+")) {
+			if (word.getBytes(StandardCharsets.UTF_8).length >= 3) return true;
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized String toString() {
+		long listBytes = 0;
+		for (Postings p : trigrams.values()) {
+			listBytes += p.length;
+		}
+		return "ClipSearchIndex[" + size + " clips, " + trigrams.size() + " trigrams, "
+				+ textLength + " bytes of text, " + listBytes + " bytes of lists]";
+	}
+
+	private boolean isIndexed(int id) {
+		return id < textStart.length && textStart[id] >= 0;
+	}
+
+	private void addTrigrams(int id) {
+		for (int i = textStart[id]; i + 3 <= textEnd[id]; i++) {
+			trigrams.computeIfAbsent(trigram(text, i), k -> new Postings()).add(id);
+		}
+	}
+
+	// Checks that the text of the clip really contains every word, since
+	// having all the trigrams of a word does not mean having the word
+	private boolean matches(int id, byte[][] words) {
+		for (byte[] word : words) {
+			if (!contains(textStart[id], textEnd[id], word)) return false;
+		}
+		return true;
+	}
+
+	private boolean contains(int start, int end, byte[] word) {
+		int n = word.length;
+		byte first = word[0];
+		for (int i = start, last = end - n; i <= last; i++) {
+			if (text[i] != first) continue;
+			int j = 1;
+			while (j < n && text[i + j] == word[j]) j++;
+			if (j == n) return true;
+		}
+		return false;
+	}
+
+	private static int trigram(byte[] bytes, int i) {
+		return (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF);
+	}
+
+	// Returns "folder/file name" in lower case, as UTF-8
+	private static byte[] searchText(File file) {
+		File parent = file.getParentFile();
+		String name = parent == null ? file.getName() : parent.getName() + "/" + file.getName();
+		return name.toLowerCase().getBytes(StandardCharsets.UTF_8);
+	}
+
+	// Makes the text and the lists again from the clips still in the
+	// index, dropping everything that belonged to removed clips
+	private void rebuild() {
+		byte[] oldText = text;
+		text = new byte[Math.max(1024, textLength)];
+		textLength = 0;
+		trigrams = new HashMap<>();
+		for (int id = 0; id < textStart.length; id++) {
+			if (textStart[id] < 0) continue;
+			int n = textEnd[id] - textStart[id];
+			System.arraycopy(oldText, textStart[id], text, textLength, n);
+			textStart[id] = textLength;
+			textLength += n;
+			textEnd[id] = textLength;
+			addTrigrams(id);
+		}
+		removed = 0;
+	}
+}
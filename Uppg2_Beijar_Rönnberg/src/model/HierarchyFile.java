@@ -0,0 +1,271 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HierarchyFile saves and loads an album hierarchy in a compact,
+ * versioned binary format.
+ *
+ * The file starts with a string table holding the path of every sound
+ * clip once. The albums follow in pre-order, so that a parent always
+ * comes before its sub-albums. Each album is stored as the index of its
+ * parent album, its title and the ids of its sound clips in the string
+ * table:
+ *
+ *   int magic, int version
+ *   int clipCount,  clipCount * string path
+ *   int albumCount, albumCount * (int parent, string title, int n, n * int clipId)
+ *
+ * where a string is an int length followed by that many UTF-8 bytes, and
+ * the parent of the root album is -1.
+ *
+ * Earlier versions saved the hierarchy with Java serialization in a .ser
+ * file. load() still reads those files, but they are never written.
+ */
+public class HierarchyFile {
+
+	private static final int MAGIC = 0x4D4F4C42; // "MOLB"
+	private static final int VERSION = 1;
+	private static final short SERIALIZED_MAGIC = (short) 0xACED; // how a Java serialization stream starts
+
+	/**
+	 * Writes the hierarchy below root to file. The file is first written next
+	 * to its final place and then moved there, so a crash or shutdown while
+	 * saving never leaves half a hierarchy behind.
+	 */
+	public static void save(Album root, File file) throws IOException {
+		// Give every sound clip an id, in the order they are first seen
+		Map<SoundClip, Integer> clipIds = new HashMap<>();
+		List<SoundClip> clips = new ArrayList<>();
+		List<Album> albums = new ArrayList<>();
+		collect(root, albums, clips, clipIds);
+
+		File temp = new File(file.getPath() + ".tmp");
+		try {
+			write(albums, clips, clipIds, temp);
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+		Path target = file.toPath();
+		try {
+			Files.move(temp.toPath(), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	// Writes the albums and sound clips listed by collect to file
+	private static void write(List<Album> albums, List<SoundClip> clips, Map<SoundClip, Integer> clipIds, File file) throws IOException {
+		Map<Album, Integer> albumIds = new IdentityHashMap<>();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+
+			out.writeInt(clips.size());
+			for (SoundClip clip : clips) {
+				writeString(out, clip.getFile().getPath());
+			}
+
+			out.writeInt(albums.size());
+			for (int i = 0; i < albums.size(); i++) {
+				Album album = albums.get(i);
+				albumIds.put(album, i);
+				Album parent = album.getParentAlbum();
+				out.writeInt(i == 0 || parent == null ? -1 : albumIds.get(parent));
+				writeString(out, album.toString());
+				out.writeInt(album.getSoundClips().size());
+				for (SoundClip clip : album.getSoundClips()) {
+					out.writeInt(clipIds.get(clip));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a hierarchy written by save from file, and returns its root album.
+	 * The albums are not yet listed by SoundClip.getAlbums(), so the file can
+	 * be read on any thread; call attachSoundClips() on the root album on the
+	 * JavaFX thread before using it.
+	 * A .ser file saved by an earlier version is read as well.
+	 * @throws IOException if the file cannot be read or is not a hierarchy file
+	 */
+	public static Album load(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() >= 2 && buffer.getShort(0) == SERIALIZED_MAGIC) {
+				return loadSerialized(file);
+			}
+			if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+				throw new IOException(file.getName() + " is not a Music Organizer hierarchy file");
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IOException(file.getName() + " has unsupported version " + version);
+			}
+
+			SoundClip[] clips = new SoundClip[readCount(buffer, 4, file)];
+			for (int i = 0; i < clips.length; i++) {
+				clips[i] = SoundClipRegistry.intern(new File(readString(buffer, file)));
+			}
+
+			Album[] albums = new Album[readCount(buffer, 12, file)];
+			for (int i = 0; i < albums.length; i++) {
+				int parent = buffer.getInt();
+				String title = readString(buffer, file);
+				albums[i] = parent < 0 ? new Album(title) : new Album(title, albums[parent]);
+				int clipCount = buffer.getInt();
+				for (int j = 0; j < clipCount; j++) {
+					albums[i].addSoundClipDetached(clips[buffer.getInt()]);
+				}
+			}
+			if (albums.length == 0) {
+				throw new IOException(file.getName() + " contains no albums");
+			}
+			return albums[0];
+		} catch (RuntimeException e) {
+			// Buffer underflows and bad indexes mean the file is broken
+			throw new IOException(file.getName() + " is damaged", e);
+		}
+	}
+
+	// Reads a hierarchy that an earlier version saved with Java
+	// serialization. The Album and SoundClip classes in the file no longer
+	// match the current ones, so their data is read into the Legacy classes
+	// below, which have the same fields, and copied into new albums.
+	private static Album loadSerialized(File file) throws IOException {
+		Object root;
+		try (LegacyInputStream in = new LegacyInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			root = in.readObject();
+		} catch (ClassNotFoundException | IOException | RuntimeException e) {
+			throw new IOException(file.getName() + " is not a hierarchy saved by an earlier version of Music Organizer", e);
+		}
+		if (!(root instanceof LegacyAlbum)) {
+			throw new IOException(file.getName() + " does not contain an album hierarchy");
+		}
+		return copy((LegacyAlbum) root, null);
+	}
+
+	private static Album copy(LegacyAlbum legacy, Album parent) {
+		Album album = parent == null ? new Album(legacy.title) : new Album(legacy.title, parent);
+		for (LegacySoundClip clip : legacy.soundClips) {
+			album.addSoundClipDetached(SoundClipRegistry.intern(clip.file));
+		}
+		for (LegacyAlbum subAlbum : legacy.subAlbums) {
+			copy(subAlbum, album);
+		}
+		return album;
+	}
+
+	// The fields of model.Album and model.SoundClip as they were saved.
+	// The names must not change, since they are matched against the file.
+	private static class LegacyAlbum implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private String title;
+		private LegacyAlbum parentAblum;
+		private HashSet<LegacyAlbum> subAlbums;
+		private HashSet<LegacySoundClip> soundClips;
+	}
+
+	private static class LegacySoundClip implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private File file;
+	}
+
+	// Reads model.Album and model.SoundClip as the Legacy classes, and
+	// refuses every class that an old hierarchy file cannot contain.
+	private static class LegacyInputStream extends ObjectInputStream {
+
+		LegacyInputStream(InputStream in) throws IOException {
+			super(in);
+			setObjectInputFilter(info -> {
+				Class<?> c = info.serialClass();
+				if (c == null || c.isArray() || c == LegacyAlbum.class || c == LegacySoundClip.class
+						|| c == HashSet.class || c == File.class || c == String.class) {
+					return ObjectInputFilter.Status.UNDECIDED;
+				}
+				return ObjectInputFilter.Status.REJECTED;
+			});
+		}
+
+		@Override
+		protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+			ObjectStreamClass saved = super.readClassDescriptor();
+			switch (saved.getName()) {
+				case "model.Album":
+					return ObjectStreamClass.lookup(LegacyAlbum.class);
+				case "model.SoundClip":
+					return ObjectStreamClass.lookup(LegacySoundClip.class);
+				default:
+					return saved;
+			}
+		}
+	}
+
+	// Lists the albums in pre-order and numbers the sound clips.
+	private static void collect(Album album, List<Album> albums, List<SoundClip> clips, Map<SoundClip, Integer> clipIds) {
+		albums.add(album);
+		for (SoundClip clip : album.getSoundClips()) {
+			if (!clipIds.containsKey(clip)) {
+				clipIds.put(clip, clips.size());
+				clips.add(clip);
+			}
+		}
+		for (Album subAlbum : album.getSubAlbums()) {
+			collect(subAlbum, albums, clips, clipIds);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	// Reads the number of items that follow, each taking at least minBytes,
+	// and checks that the rest of the file can hold them before arrays are
+	// made for them
+	private static int readCount(ByteBuffer buffer, int minBytes, File file) throws IOException {
+		int count = buffer.getInt();
+		if (count < 0 || count > buffer.remaining() / minBytes) {
+			throw new IOException(file.getName() + " is damaged: bad count " + count);
+		}
+		return count;
+	}
+
+	private static String readString(ByteBuffer buffer, File file) throws IOException {
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IOException(file.getName() + " is damaged: bad string length " + length);
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
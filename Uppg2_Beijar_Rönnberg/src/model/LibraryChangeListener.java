@@ -0,0 +1,41 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * LibraryChangeListener is told by a LibraryWatcher when sound clips
+ * have been added to or removed from the library on disk.
+ *
+ * Both methods are called from the watcher thread.
+ */
+public interface LibraryChangeListener {
+
+	/**
+	 * Called once for every burst of changes.
+	 * @param added the sound clips that appeared on disk
+	 * @param removed the sound clips that were deleted from disk
+	 * @param renamed the sound clips whose files were renamed within their
+	 * folder, mapped to the sound clips of their new names
+	 * @param removedFolders folders that were deleted; every sound clip
+	 * under them is gone as well
+	 */
+	void libraryChanged(Set<SoundClip> added, Set<SoundClip> removed, Map<SoundClip, SoundClip> renamed, Set<Path> removedFolders);
+
+	/**
+	 * Called when the file system dropped events, so the library has
+	 * to be scanned again to be up to date.
+	 */
+	void changesLost();
+
+	/**
+	 * Called when folders that still exist could not be watched, e.g.
+	 * because the system limit of watched folders was reached or they
+	 * cannot be read. Their sound clips are kept, but changes in them are
+	 * not reported.
+	 * @param folders the folders, mapped to why watching them failed
+	 */
+	void watchFailed(Map<Path, IOException> folders);
+}
@@ -0,0 +1,196 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * LibraryIndex remembers the contents of every folder in a sound clip
+ * library between runs of the program, so that a SoundClipScanner only
+ * has to list the folders that have changed since the last scan.
+ *
+ * A folder is considered unchanged if its last modified time is the same
+ * as when it was indexed. Adding, removing or renaming an entry in a folder
+ * updates that time, but changing the contents of a file in place does not.
+ * That does not matter here, since the index only remembers which files
+ * there are; anything read from inside a file, like its duration, is read
+ * again every run and checked against the file where it is cached.
+ */
+public class LibraryIndex {
+
+	private static final int MAGIC = 0x4D4F4958; // "MOIX"
+	private static final int VERSION = 2; // 1 also stored the size and time of every file
+
+	private final String rootPath;
+	private final Map<String, FolderEntry> folders = new ConcurrentHashMap<>();
+	private final Set<String> visited = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Make an empty index for the library under rootPath.
+	 */
+	public LibraryIndex(String rootPath) {
+		this.rootPath = rootPath;
+	}
+
+	/**
+	 * Reads the index of the library under rootPath from file. If the file
+	 * does not exist, was written by another version, or belongs to another
+	 * library, returns an empty index.
+	 * @throws IOException if the file is broken; an empty index can then be used instead
+	 */
+	public static LibraryIndex load(File file, String rootPath) throws IOException {
+		LibraryIndex index = new LibraryIndex(rootPath);
+		if (!file.isFile()) return index;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) return index;
+			if (!in.readUTF().equals(rootPath)) return index;
+
+			int folderCount = in.readInt();
+			for (int i = 0; i < folderCount; i++) {
+				String path = in.readUTF();
+				long lastModified = in.readLong();
+				String[] subFolders = new String[in.readInt()];
+				for (int j = 0; j < subFolders.length; j++) {
+					subFolders[j] = in.readUTF();
+				}
+				String[] names = new String[in.readInt()];
+				for (int j = 0; j < names.length; j++) {
+					names[j] = in.readUTF();
+				}
+				index.folders.put(path, new FolderEntry(lastModified, subFolders, names));
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Writes the index to file. The file is first written next to its final
+	 * place and then moved there, so a crash never leaves half an index behind.
+	 */
+	public void save(File file) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null) parent.mkdirs();
+		File temp = new File(file.getPath() + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(rootPath);
+			out.writeInt(folders.size());
+			for (Map.Entry<String, FolderEntry> e : folders.entrySet()) {
+				FolderEntry f = e.getValue();
+				out.writeUTF(e.getKey());
+				out.writeLong(f.lastModified);
+				out.writeInt(f.subFolders.length);
+				for (String name : f.subFolders) {
+					out.writeUTF(name);
+				}
+				out.writeInt(f.fileNames.length);
+				for (String name : f.fileNames) {
+					out.writeUTF(name);
+				}
+			}
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Returns the file an index for the library under rootPath is kept in.
+	 * Indexes are stored in the user's home folder, never in the library.
+	 */
+	public static File indexFileFor(String rootPath) {
+		String absolute = new File(rootPath).getAbsolutePath();
+		String name = Integer.toHexString(absolute.hashCode()) + ".idx";
+		return new File(new File(System.getProperty("user.home"), ".musicorganizer"), name);
+	}
+
+	/**
+	 * @return the number of folders in the index.
+	 */
+	public int size() {
+		return folders.size();
+	}
+
+	/**
+	 * @return the paths of all folders in the index.
+	 */
+	public List<Path> getFolders() {
+		List<Path> paths = new ArrayList<>(folders.size());
+		for (String key : folders.keySet()) {
+			paths.add(Paths.get(key));
+		}
+		return paths;
+	}
+
+	/**
+	 * Returns the entry of folder if it has not been modified since it was
+	 * indexed, or null if it has to be listed again. Marks folder as visited.
+	 */
+	FolderEntry lookup(Path folder, long lastModified) {
+		String key = folder.toAbsolutePath().toString();
+		visited.add(key);
+		FolderEntry entry = folders.get(key);
+		return entry != null && entry.lastModified == lastModified ? entry : null;
+	}
+
+	/**
+	 * Returns the entry of folder, or null if it is not in the index.
+	 */
+	FolderEntry get(Path folder) {
+		return folders.get(folder.toAbsolutePath().toString());
+	}
+
+	/**
+	 * Stores a freshly listed folder.
+	 */
+	void put(Path folder, FolderEntry entry) {
+		folders.put(folder.toAbsolutePath().toString(), entry);
+	}
+
+	/**
+	 * Starts a new scan, forgetting which folders were visited.
+	 */
+	void beginScan() {
+		visited.clear();
+	}
+
+	/**
+	 * Ends a complete scan by dropping every folder that was not visited,
+	 * i.e. folders that have been deleted since the last scan.
+	 */
+	void endScan() {
+		folders.keySet().retainAll(visited);
+		visited.clear();
+	}
+
+	/**
+	 * FolderEntry holds the names of the sub folders and the WAV files
+	 * of one folder.
+	 */
+	static class FolderEntry {
+		final long lastModified;
+		final String[] subFolders;
+		final String[] fileNames;
+
+		FolderEntry(long lastModified, String[] subFolders, String[] fileNames) {
+			this.lastModified = lastModified;
+			this.subFolders = subFolders;
+			this.fileNames = fileNames;
+		}
+	}
+}
@@ -0,0 +1,311 @@
+package model;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LibraryWatcher keeps watching the folders of a sound clip library
+ * after it has been loaded, and reports WAV files that are added,
+ * removed or renamed on disk.
+ *
+ * Events are debounced: the watcher waits until no event has arrived
+ * for QUIET_DELAY ms (but never longer than MAX_DELAY ms) and then
+ * reports everything that happened as one change. An add followed by
+ * a remove of the same file cancels out.
+ *
+ * A WAV file that is deleted and directly followed by a WAV file created
+ * in the same folder is reported as a rename, which is how renaming a
+ * file shows up in a WatchService.
+ */
+public class LibraryWatcher implements Runnable {
+
+	private static final long QUIET_DELAY = 200; // ms without events before a change is reported
+	private static final long MAX_DELAY = 1000; // longest time in ms a change is held back
+
+	private final WatchService service;
+	private final LibraryChangeListener listener;
+	private final LibraryIndex index;
+	private final Map<WatchKey, Path> folders = new HashMap<>();
+	private final Set<Path> folderPaths = new HashSet<>();
+
+	// The change being collected, reported and cleared by flush()
+	private final Set<Path> added = new LinkedHashSet<>();
+	private final Set<Path> removed = new LinkedHashSet<>();
+	private final Set<Path> removedFolders = new LinkedHashSet<>();
+	private final Map<Path, Path> renamed = new LinkedHashMap<>(); // old path -> new path
+	private final Map<Path, IOException> unwatched = new LinkedHashMap<>(); // folders that could not be registered
+	private Path lastDeleted; // the WAV file deleted by the previous event, if it was one
+	private boolean overflow = false;
+
+	/**
+	 * Make a watcher for the folders of a library that has just been
+	 * scanned with index. The folders are registered by the watcher
+	 * thread when it starts, so making a watcher is cheap.
+	 * Requires listener != null.
+	 */
+	public LibraryWatcher(LibraryIndex index, LibraryChangeListener listener) throws IOException {
+		assert listener != null;
+		this.listener = listener;
+		this.index = index;
+		this.service = FileSystems.getDefault().newWatchService();
+	}
+
+	/**
+	 * Stops watching. The watcher thread ends shortly after.
+	 */
+	public void close() {
+		try {
+			service.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	// Main loop for the watcher thread
+	//
+	// Registers the library folders, then waits for the first event, keeps
+	// collecting events until the folders have been quiet for a while, and
+	// reports them.
+	@Override
+	public void run() {
+		try {
+			registerLibrary();
+			flush();
+			while (true) {
+				WatchKey key = service.take();
+				long deadline = System.currentTimeMillis() + MAX_DELAY;
+				while (key != null) {
+					process(key);
+					long wait = Math.min(QUIET_DELAY, deadline - System.currentTimeMillis());
+					key = wait > 0 ? service.poll(wait, TimeUnit.MILLISECONDS) : null;
+				}
+				flush();
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// the watcher was closed, end the thread
+		}
+	}
+
+	// Adds the events of one folder to the change being collected.
+	private void process(WatchKey key) {
+		Path folder = folders.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				overflow = true;
+				lastDeleted = null;
+				continue;
+			}
+			if (folder == null) continue;
+			Path path = folder.resolve((Path) event.context());
+
+			if (event.kind() == ENTRY_CREATE) {
+				if (Files.isDirectory(path)) {
+					lastDeleted = null;
+					addFolder(path);
+				} else if (SoundClipScanner.isWAVFile(path.getFileName().toString())) {
+					fileCreated(path);
+				} else {
+					lastDeleted = null;
+				}
+			} else if (event.kind() == ENTRY_DELETE) {
+				if (folderPaths.contains(path)) {
+					lastDeleted = null;
+					removeFolder(path);
+				} else if (SoundClipScanner.isWAVFile(path.getFileName().toString())) {
+					fileDeleted(path);
+				} else {
+					lastDeleted = null;
+				}
+			}
+		}
+		if (!key.reset() && folder != null) {
+			removeFolder(folder); // the folder itself is gone
+		}
+	}
+
+	// Records a created WAV file, as the new name of the file deleted just
+	// before it if that was in the same folder.
+	private void fileCreated(Path path) {
+		Path old = lastDeleted;
+		lastDeleted = null;
+		if (old != null && !old.equals(path) && old.getParent().equals(path.getParent())) {
+			removed.remove(old);
+			renamed.put(old, path);
+		} else {
+			removed.remove(path);
+			added.add(path);
+		}
+	}
+
+	// Records a deleted WAV file, remembering it in case it is being renamed.
+	private void fileDeleted(Path path) {
+		if (added.remove(path)) {
+			lastDeleted = null; // it was only there for a moment
+			return;
+		}
+		// If the file was itself the new name of a rename, it is the
+		// original file that is now deleted or renamed again
+		for (Map.Entry<Path, Path> e : renamed.entrySet()) {
+			if (e.getValue().equals(path)) {
+				path = e.getKey();
+				renamed.remove(path);
+				break;
+			}
+		}
+		removed.add(path);
+		lastDeleted = path;
+	}
+
+	// Registers every folder in the index. Since files can change between
+	// the scan and the registration, each folder is listed once after it is
+	// registered and compared with what the scan found.
+	private void registerLibrary() {
+		for (Path folder : index.getFolders()) {
+			if (folderPaths.contains(folder)) continue; // already registered as a new folder
+			try {
+				register(folder);
+			} catch (IOException e) {
+				if (Files.isDirectory(folder)) {
+					unwatched.put(folder, e); // still there, keep its clips
+				} else {
+					removedFolders.add(folder); // deleted since the scan
+				}
+				continue;
+			}
+			LibraryIndex.FolderEntry entry = index.get(folder);
+			Set<String> subFolders = entry == null ? Set.of() : Set.of(entry.subFolders);
+			Set<String> files = entry == null ? new HashSet<>() : new HashSet<>(Arrays.asList(entry.fileNames));
+			try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+				for (Path path : entries) {
+					String name = path.getFileName().toString();
+					if (Files.isDirectory(path)) {
+						if (!subFolders.contains(name) && !folderPaths.contains(path)) {
+							addFolder(path); // created since the scan
+						}
+					} else if (SoundClipScanner.isWAVFile(name) && !files.remove(name)) {
+						added.add(path);
+					}
+				}
+			} catch (IOException e) {
+				unwatched.put(folder, e); // changes made before it was registered are missed
+			}
+			for (String name : files) {
+				removed.add(folder.resolve(name)); // deleted since the scan
+			}
+		}
+	}
+
+	// Registers a new folder and its sub folders, and adds the WAV files
+	// that were copied into them before they could be registered.
+	private void addFolder(Path newFolder) {
+		removedFolders.remove(newFolder);
+		try {
+			Files.walkFileTree(newFolder, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+					try {
+						register(dir);
+					} catch (IOException e) {
+						unwatched.put(dir, e); // its files are still added below
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException e) {
+					if (Files.isDirectory(file)) unwatched.put(file, e);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+					if (attrs.isRegularFile() && SoundClipScanner.isWAVFile(file.getFileName().toString())) {
+						removed.remove(file);
+						added.add(file);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			unwatched.put(newFolder, e);
+		}
+	}
+
+	// Forgets a deleted folder and every folder under it.
+	private void removeFolder(Path oldFolder) {
+		folders.entrySet().removeIf(e -> {
+			if (e.getValue().startsWith(oldFolder)) {
+				e.getKey().cancel();
+				folderPaths.remove(e.getValue());
+				return true;
+			}
+			return false;
+		});
+		added.removeIf(p -> p.startsWith(oldFolder));
+		unwatched.keySet().removeIf(p -> p.startsWith(oldFolder));
+		removed.removeIf(p -> p.startsWith(oldFolder));
+		renamed.keySet().removeIf(p -> p.startsWith(oldFolder));
+		removedFolders.add(oldFolder);
+		lastDeleted = null;
+	}
+
+	private void register(Path folder) throws IOException {
+		WatchKey key = folder.register(service, ENTRY_CREATE, ENTRY_DELETE);
+		folders.put(key, folder);
+		folderPaths.add(folder);
+	}
+
+	// Reports the collected change to the listener and starts a new one.
+	private void flush() {
+		if (!unwatched.isEmpty()) {
+			listener.watchFailed(new LinkedHashMap<>(unwatched));
+			unwatched.clear();
+		}
+		if (overflow) {
+			listener.changesLost();
+		} else if (!added.isEmpty() || !removed.isEmpty() || !renamed.isEmpty() || !removedFolders.isEmpty()) {
+			Set<SoundClip> addedClips = new LinkedHashSet<>();
+			for (Path p : added) {
+				addedClips.add(SoundClipRegistry.intern(p.toFile()));
+			}
+			Set<SoundClip> removedClips = new LinkedHashSet<>();
+			for (Path p : removed) {
+				removedClips.add(SoundClipRegistry.intern(p.toFile()));
+			}
+			Map<SoundClip, SoundClip> renamedClips = new LinkedHashMap<>();
+			for (Map.Entry<Path, Path> e : renamed.entrySet()) {
+				renamedClips.put(SoundClipRegistry.intern(e.getKey().toFile()), SoundClipRegistry.intern(e.getValue().toFile()));
+			}
+			Set<Path> gone = new LinkedHashSet<>(removedFolders);
+			listener.libraryChanged(addedClips, removedClips, renamedClips, gone);
+		}
+		added.clear();
+		removed.clear();
+		renamed.clear();
+		removedFolders.clear();
+		lastDeleted = null;
+		overflow = false;
+	}
+}
@@ -0,0 +1,115 @@
+package model;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+
+/**
+ * MediaPlayerBackend plays sound clips with the JavaFX MediaPlayer,
+ * using one MediaPlayer per clip. Needs a running JavaFX toolkit.
+ */
+public class MediaPlayerBackend implements AudioBackend {
+
+	private MediaPlayer player; // the clip playing now
+	private CountDownLatch ended;
+
+	// The next SoundClip, opened and pre-buffered while the current one plays
+	private SoundClip nextClip;
+	private MediaPlayer nextPlayer;
+
+	@Override
+	public boolean start(SoundClip clip, Runnable started) {
+		MediaPlayer p;
+		if (clip == nextClip && nextPlayer != null) {
+			p = nextPlayer; // already opened while the previous SoundClip played
+		} else {
+			disposeNext();
+			p = open(clip);
+		}
+		nextClip = null;
+		nextPlayer = null;
+		if (p == null) return false;
+
+		CountDownLatch latch = new CountDownLatch(1);
+		p.setOnEndOfMedia(latch::countDown);
+		p.setOnError(latch::countDown);
+		// onPlaying also fires on every resume, but started must run once
+		p.setOnPlaying(() -> {
+			p.setOnPlaying(null);
+			started.run();
+		});
+		player = p;
+		ended = latch;
+		p.play();
+		return true;
+	}
+
+	@Override
+	public boolean awaitEnd(long timeoutMillis) throws InterruptedException {
+		if (player == null) return true;
+		if (!ended.await(timeoutMillis, TimeUnit.MILLISECONDS)) return false;
+		release();
+		return true;
+	}
+
+	@Override
+	public void pause() {
+		if (player != null) player.pause();
+	}
+
+	@Override
+	public void resume() {
+		if (player != null) player.play();
+	}
+
+	@Override
+	public void stop() {
+		if (player != null) {
+			player.stop();
+			release();
+		}
+	}
+
+	@Override
+	public void prepare(SoundClip clip) {
+		if (clip == nextClip) return;
+		disposeNext();
+		nextClip = clip;
+		nextPlayer = open(clip);
+	}
+
+	@Override
+	public void close() {
+		disposeNext();
+		nextClip = null;
+		nextPlayer = null;
+		if (player != null) {
+			release();
+		}
+	}
+
+	// Disposes the MediaPlayer of the current clip, which frees its native resources
+	private void release() {
+		player.dispose();
+		player = null;
+		ended = null;
+	}
+
+	// Creates a MediaPlayer for a SoundClip, or returns null if it cannot be played
+	private MediaPlayer open(SoundClip sc) {
+		try {
+			return new MediaPlayer(new Media(sc.getFile().toURI().toString()));
+		} catch (RuntimeException e) {
+			System.out.println("Cannot play " + sc.getFile() + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	private void disposeNext() {
+		if (nextPlayer != null) {
+			nextPlayer.dispose();
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * MetadataExtractor reads the ClipMetadata of sound clips on a few
+ * background threads and stores it in the clips.
+ *
+ * Clips are extracted in two priorities. Clips passed to requestAll are
+ * done in the background, in order. Clips passed to requestFirst, such as
+ * the rows that are visible on screen, go before all of them. A clip is
+ * put first only once, however often it is requested, until a worker has
+ * taken it.
+ *
+ * Finished clips are handed to a listener in batches, from the extractor
+ * threads. A batch is handed over when it is full, or at the latest
+ * BATCH_DELAY ms after its first clip was finished.
+ */
+public class MetadataExtractor {
+
+	private static final int BATCH_SIZE = 256; // most clips handed to the listener at once
+	private static final long BATCH_DELAY = 100; // longest time in ms a finished clip is held back
+
+	private final LinkedBlockingDeque<SoundClip> waiting = new LinkedBlockingDeque<>();
+	private final Set<SoundClip> waitingFirst = ConcurrentHashMap.newKeySet(); // the clips put first that no worker has taken yet
+	private final Consumer<List<SoundClip>> listener;
+	private final List<Thread> workers = new ArrayList<>();
+	private volatile boolean stopped = false;
+
+	/**
+	 * Make an extractor running threads worker threads, which hands the
+	 * clips it has finished to listener.
+	 * Requires threads > 0 and listener != null.
+	 */
+	public MetadataExtractor(int threads, Consumer<List<SoundClip>> listener) {
+		assert threads > 0 && listener != null;
+		this.listener = listener;
+		for (int i = 0; i < threads; i++) {
+			Thread t = new Thread(this::work, "MetadataExtractor-" + i);
+			t.setDaemon(true);
+			// Never compete with loading or playing for the CPU
+			t.setPriority(Thread.MIN_PRIORITY);
+			workers.add(t);
+			t.start();
+		}
+	}
+
+	/**
+	 * Make an extractor with one thread per two processors, at most 4,
+	 * since reading headers is mostly waiting for the disk.
+	 */
+	public MetadataExtractor(Consumer<List<SoundClip>> listener) {
+		this(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)), listener);
+	}
+
+	/**
+	 * Extracts the metadata of clips in the background, after all clips
+	 * that are already waiting.
+	 */
+	public void requestAll(Collection<SoundClip> clips) {
+		for (SoundClip clip : clips) {
+			if (clip.getMetadata() == null) waiting.offerLast(clip);
+		}
+	}
+
+	/**
+	 * Extracts the metadata of clip before any other waiting clip.
+	 * Clips requested later go before clips requested earlier. A clip that
+	 * is already waiting at the front is not added again.
+	 */
+	public void requestFirst(SoundClip clip) {
+		if (clip.getMetadata() == null && waitingFirst.add(clip)) waiting.offerFirst(clip);
+	}
+
+	/**
+	 * Forgets all waiting clips and stops the worker threads.
+	 */
+	public void shutdown() {
+		stopped = true;
+		waiting.clear();
+		waitingFirst.clear();
+		for (Thread t : workers) {
+			t.interrupt();
+		}
+	}
+
+	/**
+	 * Reads the metadata of one sound clip and stores it in the clip.
+	 * @return the metadata, or null if the file cannot be read at all
+	 */
+	public static ClipMetadata extract(SoundClip clip) {
+		BasicFileAttributes attrs;
+		try {
+			attrs = Files.readAttributes(clip.getFile().toPath(), BasicFileAttributes.class);
+		} catch (IOException e) {
+			return null; // the file is gone
+		}
+		ClipMetadata metadata;
+		try {
+			WavFile wav = WavFile.readHeader(clip.getFile());
+			metadata = new ClipMetadata(attrs.size(), attrs.lastModifiedTime().toMillis(), wav.getFormatTag(),
+					wav.getSampleRate(), wav.getChannels(), wav.getBitsPerSample(), wav.getDurationMillis());
+		} catch (IOException e) {
+			metadata = new ClipMetadata(attrs.size(), attrs.lastModifiedTime().toMillis());
+		}
+		clip.setMetadata(metadata);
+		return metadata;
+	}
+
+	// Main loop of a worker thread
+	//
+	// Takes clips from the front of the deque and collects the finished
+	// ones until the batch is full or its first clip has waited BATCH_DELAY ms.
+	private void work() {
+		List<SoundClip> batch = new ArrayList<>();
+		long deadline = 0;
+		try {
+			while (!stopped) {
+				SoundClip clip;
+				if (batch.isEmpty()) {
+					clip = waiting.takeFirst();
+				} else {
+					long wait = deadline - System.currentTimeMillis();
+					clip = wait > 0 ? waiting.pollFirst(wait, TimeUnit.MILLISECONDS) : null;
+				}
+				if (clip != null) waitingFirst.remove(clip);
+				if (clip != null && clip.getMetadata() == null && extract(clip) != null) {
+					if (batch.isEmpty()) deadline = System.currentTimeMillis() + BATCH_DELAY;
+					batch.add(clip);
+				}
+				if (batch.size() >= BATCH_SIZE || (!batch.isEmpty() && System.currentTimeMillis() >= deadline)) {
+					listener.accept(batch);
+					batch = new ArrayList<>();
+				}
+			}
+		} catch (InterruptedException e) {
+			// the extractor was shut down
+		}
+	}
+}
@@ -0,0 +1,319 @@
+package model;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * OrganizerMetrics collects numbers that show where time goes in the
+ * Music Organizer: how long a clip waits from being put on the play
+ * queue until it is heard, how long the player takes from the end of one
+ * clip to the start of the next, how deep the queue is, how fast the
+ * library loads, and how long sound clips take to decode.
+ *
+ * There is one instance, shared by the whole program. Recording is a few
+ * atomic adds and never blocks, so it can be done from any thread. The
+ * numbers are exposed as a JMX MBean and can be printed as one log line
+ * at a fixed interval.
+ */
+public class OrganizerMetrics implements OrganizerMetricsMBean {
+
+	private static final OrganizerMetrics INSTANCE = new OrganizerMetrics();
+	private static final String OBJECT_NAME = "musicorganizer:type=OrganizerMetrics";
+
+	private final Histogram playStart = new Histogram();
+	private final Histogram handover = new Histogram();
+	private final Histogram decode = new Histogram();
+	private volatile IntSupplier queueDepth = () -> 0;
+
+	private final AtomicLong clipsLoaded = new AtomicLong();
+	private volatile long scanStart = 0; // System.nanoTime() when the scan started, 0 if none
+	private volatile long scanEnd = 0; // when it ended, 0 while it is running
+
+	private ScheduledExecutorService logger;
+
+	private OrganizerMetrics() {
+	}
+
+	/**
+	 * @return the metrics of the program.
+	 */
+	public static OrganizerMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server, once.
+	 */
+	public synchronized void register() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+			}
+		} catch (JMException e) {
+			System.out.println("Could not register metrics with JMX: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Prints a summary line every intervalSeconds seconds, on a daemon
+	 * thread. Calling it again changes the interval; 0 stops the logging.
+	 */
+	public synchronized void startLogging(long intervalSeconds) {
+		if (logger != null) {
+			logger.shutdownNow();
+			logger = null;
+		}
+		if (intervalSeconds <= 0) return;
+		logger = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "OrganizerMetrics");
+			t.setDaemon(true);
+			return t;
+		});
+		logger.scheduleAtFixedRate(() -> System.out.println(this), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Makes getQueueDepth() report the size of queue.
+	 */
+	public void setQueue(SoundClipBlockingQueue queue) {
+		queueDepth = queue::size;
+	}
+
+	/**
+	 * Records that a play request put on the queue enqueuedNanos (from
+	 * System.nanoTime()) has started to sound.
+	 */
+	public void playStarted(long enqueuedNanos) {
+		playStart.record(System.nanoTime() - enqueuedNanos);
+	}
+
+	/**
+	 * Records that a sound clip started nanos ns after the one before it
+	 * ended, when the player plays several in a row.
+	 */
+	public void clipHandedOver(long nanos) {
+		handover.record(nanos);
+	}
+
+	/**
+	 * Records that a sound clip took nanos ns to decode.
+	 */
+	public void clipDecoded(long nanos) {
+		decode.record(nanos);
+	}
+
+	/**
+	 * Starts counting the clips of a new scan of the library.
+	 */
+	public void scanStarted() {
+		clipsLoaded.set(0);
+		scanEnd = 0;
+		scanStart = System.nanoTime();
+	}
+
+	public void clipsLoaded(int count) {
+		clipsLoaded.addAndGet(count);
+	}
+
+	public void scanFinished() {
+		scanEnd = System.nanoTime();
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return queueDepth.getAsInt();
+	}
+
+	@Override
+	public long getPlayStartCount() {
+		return playStart.getCount();
+	}
+
+	@Override
+	public double getPlayStartLatencyMeanMillis() {
+		return playStart.getMeanMillis();
+	}
+
+	@Override
+	public double getPlayStartLatencyP50Millis() {
+		return playStart.getPercentileMillis(50);
+	}
+
+	@Override
+	public double getPlayStartLatencyP95Millis() {
+		return playStart.getPercentileMillis(95);
+	}
+
+	@Override
+	public double getPlayStartLatencyMaxMillis() {
+		return playStart.getMaxMillis();
+	}
+
+	@Override
+	public long getHandoverCount() {
+		return handover.getCount();
+	}
+
+	@Override
+	public double getHandoverLatencyMeanMillis() {
+		return handover.getMeanMillis();
+	}
+
+	@Override
+	public double getHandoverLatencyP50Millis() {
+		return handover.getPercentileMillis(50);
+	}
+
+	@Override
+	public double getHandoverLatencyP95Millis() {
+		return handover.getPercentileMillis(95);
+	}
+
+	@Override
+	public double getHandoverLatencyMaxMillis() {
+		return handover.getMaxMillis();
+	}
+
+	@Override
+	public long getClipsLoaded() {
+		return clipsLoaded.get();
+	}
+
+	@Override
+	public double getClipsLoadedPerSecond() {
+		long start = scanStart;
+		if (start == 0) return 0;
+		long end = scanEnd != 0 ? scanEnd : System.nanoTime();
+		double seconds = (end - start) / 1e9;
+		return seconds <= 0 ? 0 : clipsLoaded.get() / seconds;
+	}
+
+	@Override
+	public long getDecodeCount() {
+		return decode.getCount();
+	}
+
+	@Override
+	public double getDecodeTimeMeanMillis() {
+		return decode.getMeanMillis();
+	}
+
+	@Override
+	public double getDecodeTimeP50Millis() {
+		return decode.getPercentileMillis(50);
+	}
+
+	@Override
+	public double getDecodeTimeP95Millis() {
+		return decode.getPercentileMillis(95);
+	}
+
+	@Override
+	public double getDecodeTimeMaxMillis() {
+		return decode.getMaxMillis();
+	}
+
+	@Override
+	public long[] getDecodeTimeHistogram() {
+		return decode.getBuckets();
+	}
+
+	@Override
+	public void reset() {
+		playStart.reset();
+		handover.reset();
+		decode.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("metrics: queue %d, play start p50 %.1f ms p95 %.1f ms max %.1f ms (%d), "
+				+ "handover p50 %.1f ms p95 %.1f ms max %.1f ms (%d), "
+				+ "loaded %d clips at %.0f/s, decode p50 %.1f ms p95 %.1f ms max %.1f ms (%d)",
+				getQueueDepth(), getPlayStartLatencyP50Millis(), getPlayStartLatencyP95Millis(),
+				getPlayStartLatencyMaxMillis(), getPlayStartCount(), getHandoverLatencyP50Millis(),
+				getHandoverLatencyP95Millis(), getHandoverLatencyMaxMillis(), getHandoverCount(),
+				getClipsLoaded(), getClipsLoadedPerSecond(),
+				getDecodeTimeP50Millis(), getDecodeTimeP95Millis(), getDecodeTimeMaxMillis(), getDecodeCount());
+	}
+
+	/**
+	 * Histogram counts times in buckets that double in width: bucket i
+	 * holds times from 2^(i-1) up to 2^i microseconds. 40 buckets cover
+	 * everything up to several days.
+	 */
+	static class Histogram {
+		private static final int BUCKETS = 40;
+
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong total = new AtomicLong(); // ns
+		private final AtomicLong max = new AtomicLong(); // ns
+
+		void record(long nanos) {
+			if (nanos < 0) nanos = 0;
+			long micros = nanos / 1000;
+			int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+			buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+			count.incrementAndGet();
+			total.addAndGet(nanos);
+			max.accumulateAndGet(nanos, Math::max);
+		}
+
+		long getCount() {
+			return count.get();
+		}
+
+		double getMeanMillis() {
+			long n = count.get();
+			return n == 0 ? 0 : total.get() / 1e6 / n;
+		}
+
+		double getMaxMillis() {
+			return max.get() / 1e6;
+		}
+
+		// The upper limit of the bucket holding the p:th percentile, but never above the max
+		double getPercentileMillis(double p) {
+			long n = count.get();
+			if (n == 0) return 0;
+			long rank = (long) Math.ceil(n * p / 100);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += buckets.get(i);
+				if (seen >= rank) {
+					return Math.min((1L << i) / 1000.0, getMaxMillis());
+				}
+			}
+			return getMaxMillis();
+		}
+
+		long[] getBuckets() {
+			long[] copy = new long[BUCKETS];
+			for (int i = 0; i < BUCKETS; i++) {
+				copy[i] = buckets.get(i);
+			}
+			return copy;
+		}
+
+		void reset() {
+			for (int i = 0; i < BUCKETS; i++) {
+				buckets.set(i, 0);
+			}
+			count.set(0);
+			total.set(0);
+			max.set(0);
+		}
+	}
+}
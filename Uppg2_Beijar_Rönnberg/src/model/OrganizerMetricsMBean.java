@@ -0,0 +1,54 @@
+package model;
+
+/**
+ * OrganizerMetricsMBean is the JMX view of OrganizerMetrics. It is
+ * registered as musicorganizer:type=OrganizerMetrics, so the numbers
+ * can be read with e.g. JConsole while the program runs.
+ *
+ * Times are in milliseconds. Percentiles come from histograms with
+ * power-of-two buckets, so they are rounded up to the bucket limit.
+ */
+public interface OrganizerMetricsMBean {
+
+	/** Lists of sound clips waiting in the play queue. */
+	int getQueueDepth();
+
+	/** Number of play requests that have started playing. */
+	long getPlayStartCount();
+
+	/** Time from playSoundClips putting clips on the queue until their audio starts. */
+	double getPlayStartLatencyMeanMillis();
+	double getPlayStartLatencyP50Millis();
+	double getPlayStartLatencyP95Millis();
+	double getPlayStartLatencyMaxMillis();
+
+	/** Number of sound clips started right after the one before them ended. */
+	long getHandoverCount();
+
+	/** Time from the end of one sound clip to the start of the next, not counting the gap. */
+	double getHandoverLatencyMeanMillis();
+	double getHandoverLatencyP50Millis();
+	double getHandoverLatencyP95Millis();
+	double getHandoverLatencyMaxMillis();
+
+	/** Sound clips loaded by the current or last scan of the library. */
+	long getClipsLoaded();
+
+	/** Sound clips loaded per second by the current or last scan. */
+	double getClipsLoadedPerSecond();
+
+	/** Number of sound clips decoded into memory for playing. */
+	long getDecodeCount();
+
+	/** Time spent decoding one sound clip. */
+	double getDecodeTimeMeanMillis();
+	double getDecodeTimeP50Millis();
+	double getDecodeTimeP95Millis();
+	double getDecodeTimeMaxMillis();
+
+	/** Number of decodes per bucket; bucket i holds times below 2^i microseconds. */
+	long[] getDecodeTimeHistogram();
+
+	/** Forgets all recorded times. */
+	void reset();
+}
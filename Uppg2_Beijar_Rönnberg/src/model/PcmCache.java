@@ -0,0 +1,150 @@
+package model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * PcmCache keeps the decoded PCM data of recently played sound clips in
+ * memory, so that playing them again does not have to read and decode
+ * the file.
+ *
+ * The cache holds at most a given number of bytes of audio. When it is
+ * full, the clips that were played the longest time ago are dropped.
+ * An entry is also dropped if its file has changed on disk.
+ */
+public class PcmCache {
+
+	public static final long DEFAULT_BUDGET = 64L * 1024 * 1024; // bytes
+
+	private final long budget;
+	private long bytes = 0;
+	private long hits = 0;
+	private long misses = 0;
+
+	// In access order, so the first entry is the least recently used
+	private final LinkedHashMap<SoundClip, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Make a cache holding at most DEFAULT_BUDGET bytes of audio.
+	 */
+	public PcmCache() {
+		this(DEFAULT_BUDGET);
+	}
+
+	/**
+	 * Make a cache holding at most budget bytes of audio.
+	 * Requires budget >= 0.
+	 */
+	public PcmCache(long budget) {
+		assert budget >= 0;
+		this.budget = budget;
+	}
+
+	/**
+	 * Returns the cached audio of clip, or null if it is not in the cache.
+	 */
+	public synchronized Entry get(SoundClip clip) {
+		Entry e = entries.get(clip);
+		if (e != null && !e.isCurrent(clip)) {
+			remove(clip);
+			e = null;
+		}
+		if (e == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return e;
+	}
+
+	/**
+	 * Adds the decoded audio of clip to the cache, dropping the least
+	 * recently played clips until it fits. Clips larger than the whole
+	 * budget are not cached.
+	 */
+	public synchronized void put(SoundClip clip, AudioFormat format, byte[] data) {
+		if (data.length > budget) return;
+		remove(clip);
+		Entry e = new Entry(format, data, clip.getFile().lastModified(), clip.getFile().length());
+		entries.put(clip, e);
+		bytes += data.length;
+
+		Iterator<Map.Entry<SoundClip, Entry>> it = entries.entrySet().iterator();
+		while (bytes > budget && it.hasNext()) {
+			bytes -= it.next().getValue().data.length;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Drops clip from the cache.
+	 */
+	public synchronized void remove(SoundClip clip) {
+		Entry e = entries.remove(clip);
+		if (e != null) bytes -= e.data.length;
+	}
+
+	/**
+	 * @return true if a clip of the given number of bytes can be cached.
+	 */
+	public boolean fits(long size) {
+		return size <= budget;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the number of bytes of audio in the cache.
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the share of lookups that found their clip, between 0 and 1.
+	 */
+	public synchronized double getHitRate() {
+		long total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d clips, %d KB, %d hits, %d misses", entries.size(), bytes / 1024, hits, misses);
+	}
+
+	/**
+	 * Entry is the decoded audio of one sound clip.
+	 */
+	public static class Entry {
+		public final AudioFormat format;
+		public final byte[] data;
+		private final long lastModified;
+		private final long length;
+
+		Entry(AudioFormat format, byte[] data, long lastModified, long length) {
+			this.format = format;
+			this.data = data;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+
+		// True if the file of clip has not changed since it was decoded
+		private boolean isCurrent(SoundClip clip) {
+			return clip.getFile().lastModified() == lastModified && clip.getFile().length() == length;
+		}
+	}
+}
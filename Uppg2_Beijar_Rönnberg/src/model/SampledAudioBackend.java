@@ -0,0 +1,382 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * SampledAudioBackend streams the PCM data of WAV files straight to a
+ * SourceDataLine with javax.sound.sampled. It does not need JavaFX, so
+ * sound clips can be played without a user interface.
+ *
+ * The line and the copy buffer are kept between clips. A new line is
+ * only opened when a clip has another audio format than the one before.
+ * When a clip ends and the next one has been prepared in the same format,
+ * the line is left running and the next clip is written right after it,
+ * so the two play without a gap.
+ *
+ * Clips small enough for the PcmCache are copied into memory while they
+ * play the first time, and played from there the next time, so the first
+ * play does not wait for the whole file to be read. Uncompressed WAV files
+ * are read through a WavFile mapping; other files go through AudioSystem.
+ */
+public class SampledAudioBackend implements AudioBackend {
+
+	private static final int BUFFER_SIZE = 64 * 1024; // bytes copied to the line at a time
+
+	private final Mixer mixer; // null to use the default mixer of the system
+	private final PcmCache cache;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private SourceDataLine line;
+	private AudioInputStream current; // the clip playing now
+	private boolean lineRunning = false; // the line still plays the end of a clip that has been read to the end
+
+	// The next SoundClip, opened while the current one plays
+	private SoundClip nextClip;
+	private AudioInputStream nextStream;
+
+	/**
+	 * Make a backend playing through the default mixer.
+	 */
+	public SampledAudioBackend() {
+		this(null);
+	}
+
+	/**
+	 * Make a backend playing through mixer, or the default mixer if mixer is null.
+	 */
+	public SampledAudioBackend(Mixer mixer) {
+		this(mixer, new PcmCache());
+	}
+
+	/**
+	 * Make a backend playing through mixer (or the default mixer if mixer
+	 * is null), keeping decoded clips in cache.
+	 * Requires cache != null.
+	 */
+	public SampledAudioBackend(Mixer mixer, PcmCache cache) {
+		assert cache != null;
+		this.mixer = mixer;
+		this.cache = cache;
+	}
+
+	/**
+	 * @return true if a line for CD quality sound can be opened on the
+	 * default mixer, i.e. if this backend can play anything at all.
+	 */
+	public static boolean isAvailable() {
+		AudioFormat format = new AudioFormat(44100, 16, 2, true, false);
+		try {
+			SourceDataLine l = AudioSystem.getSourceDataLine(format);
+			l.open(format);
+			l.close();
+			return true;
+		} catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return the cache of decoded clips used by this backend.
+	 */
+	public PcmCache getCache() {
+		return cache;
+	}
+
+	@Override
+	public boolean start(SoundClip clip, Runnable started) {
+		AudioInputStream in;
+		if (clip == nextClip && nextStream != null) {
+			in = nextStream;
+		} else {
+			closeQuietly(nextStream);
+			in = open(clip);
+		}
+		nextClip = null;
+		nextStream = null;
+		// Goes on writing into the running line if the format allows it,
+		// so the clip follows the previous one without a gap
+		boolean continuing = in != null && lineRunning && line.getFormat().matches(in.getFormat());
+		if (!continuing) finishLine();
+		lineRunning = false;
+		if (in == null) return false;
+
+		if (!continuing) {
+			try {
+				openLine(in.getFormat());
+				// Fill the line before starting it, so the clip starts without an underrun
+				int frameSize = in.getFormat().getFrameSize();
+				int primed = Math.min(buffer.length, line.available());
+				if (frameSize > 0) primed -= primed % frameSize;
+				int n = in.read(buffer, 0, primed);
+				if (n > 0) line.write(buffer, 0, n);
+			} catch (LineUnavailableException | IOException | IllegalArgumentException e) {
+				// getLine throws IllegalArgumentException for a format no line supports, e.g. 24-bit or float
+				System.out.println("Cannot play " + clip.getFile() + ": " + e.getMessage());
+				closeQuietly(in);
+				return false;
+			}
+			line.start();
+		}
+		current = in;
+		started.run();
+		return true;
+	}
+
+	@Override
+	public boolean awaitEnd(long timeoutMillis) throws InterruptedException {
+		if (current == null) return true;
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		// Copy a quarter of the line at a time, so a write never blocks for long
+		int frameSize = Math.max(1, current.getFormat().getFrameSize());
+		int chunk = Math.min(buffer.length, line.getBufferSize() / 4);
+		chunk = Math.max(frameSize, chunk - chunk % frameSize);
+		try {
+			do {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				int n = current.read(buffer, 0, chunk);
+				if (n <= 0) {
+					closeCurrent();
+					if (nextStream != null && line.getFormat().matches(nextStream.getFormat())) {
+						lineRunning = true; // start writes the next clip right after this one
+					} else {
+						line.drain();
+						line.stop();
+					}
+					return true;
+				}
+				line.write(buffer, 0, n);
+			} while (System.currentTimeMillis() < deadline);
+			return false;
+		} catch (IOException e) {
+			System.out.println("Error while playing: " + e.getMessage());
+			stop();
+			return true;
+		}
+	}
+
+	@Override
+	public void pause() {
+		if (current != null) line.stop();
+	}
+
+	@Override
+	public void resume() {
+		if (current != null) line.start();
+	}
+
+	@Override
+	public void stop() {
+		if (lineRunning) {
+			line.stop();
+			line.flush();
+			lineRunning = false;
+		}
+		if (current == null) return;
+		line.stop();
+		line.flush();
+		closeCurrent();
+	}
+
+	@Override
+	public void prepare(SoundClip clip) {
+		if (clip == nextClip) return;
+		closeQuietly(nextStream);
+		nextClip = clip;
+		nextStream = open(clip);
+	}
+
+	@Override
+	public void close() {
+		closeQuietly(nextStream);
+		nextClip = null;
+		nextStream = null;
+		closeCurrent();
+		lineRunning = false;
+		if (line != null) {
+			line.close();
+			line = null;
+		}
+	}
+
+	// Opens the audio stream of a SoundClip, or returns null if it cannot be played.
+	// Clips that fit in the cache are taken from it, or put in it as they are read.
+	private AudioInputStream open(SoundClip clip) {
+		PcmCache.Entry cached = cache.get(clip);
+		if (cached != null) {
+			return fromMemory(cached.format, cached.data);
+		}
+		long startTime = System.nanoTime();
+		try {
+			WavFile wav = WavFile.open(clip.getFile());
+			if (wav.isPcm()) {
+				return open(clip, wav, startTime);
+			}
+		} catch (IOException e) {
+			// not a plain WAV file, let AudioSystem try
+		}
+		try {
+			AudioInputStream in = AudioSystem.getAudioInputStream(clip.getFile());
+			AudioFormat format = in.getFormat();
+			long size = in.getFrameLength() * format.getFrameSize();
+			if (in.getFrameLength() == AudioSystem.NOT_SPECIFIED || size < 0 || !cache.fits(size)) {
+				return in; // too long to keep, stream it from the file
+			}
+			OrganizerMetrics.getInstance().clipDecoded(System.nanoTime() - startTime);
+			return new AudioInputStream(new CachingInputStream(in, clip, format, (int) size), format, in.getFrameLength());
+		} catch (UnsupportedAudioFileException | IOException e) {
+			System.out.println("Cannot play " + clip.getFile() + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	// Plays an uncompressed WAV file from its memory mapping. The samples
+	// go straight into the line, and also into the cache if they fit.
+	private AudioInputStream open(SoundClip clip, WavFile wav, long startTime) {
+		AudioFormat format = wav.getAudioFormat();
+		ByteBuffer samples = wav.getData();
+		InputStream in = new ByteBufferInputStream(samples);
+		if (cache.fits(samples.remaining())) {
+			in = new CachingInputStream(in, clip, format, samples.remaining());
+			OrganizerMetrics.getInstance().clipDecoded(System.nanoTime() - startTime);
+		}
+		return new AudioInputStream(in, format, wav.getFrameCount());
+	}
+
+	// Makes sure line is open for format, reusing the open line if it already is
+	private void openLine(AudioFormat format) throws LineUnavailableException {
+		if (line != null && line.isOpen() && line.getFormat().matches(format)) return;
+		if (line != null) line.close();
+		line = null;
+		DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
+		SourceDataLine l = (SourceDataLine) (mixer != null ? mixer.getLine(info) : AudioSystem.getLine(info));
+		l.open(format, BUFFER_SIZE);
+		line = l;
+	}
+
+	// Lets the line play out the end of the previous clip and stops it,
+	// if it was left running for a next clip that did not come
+	private void finishLine() {
+		if (!lineRunning) return;
+		line.drain();
+		line.stop();
+		lineRunning = false;
+	}
+
+	private void closeCurrent() {
+		closeQuietly(current);
+		current = null;
+	}
+
+	private static AudioInputStream fromMemory(AudioFormat format, byte[] data) {
+		return new AudioInputStream(new ByteArrayInputStream(data), format, data.length / format.getFrameSize());
+	}
+
+	// Reads from a ByteBuffer, such as the mapped data of a WavFile
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) return 0;
+			if (!buffer.hasRemaining()) return -1;
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+	// Passes the samples of a clip on while copying them, and puts the copy
+	// in the cache as soon as all samples have been read. A clip that is
+	// stopped before that is not cached. The copy grows as the clip is
+	// read, so a clip that is only prepared, or stopped early, costs little.
+	private class CachingInputStream extends InputStream {
+		private final InputStream in;
+		private final SoundClip clip;
+		private final AudioFormat format;
+		private final int size; // the number of bytes of samples the header promises
+		private byte[] data = new byte[0]; // null once the copy is given up or handed to the cache
+		private int length = 0;
+
+		CachingInputStream(InputStream in, SoundClip clip, AudioFormat format, int size) {
+			this.in = in;
+			this.clip = clip;
+			this.format = format;
+			this.size = size;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = in.read(b, off, len);
+			if (data == null || n <= 0) return n;
+			if (length + n > size) {
+				data = null; // longer than the header said
+				return n;
+			}
+			if (length + n > data.length) {
+				// Never beyond size, so the full copy is exactly as long as the samples
+				data = Arrays.copyOf(data, Math.min(size, Math.max(length + n, data.length * 2)));
+			}
+			System.arraycopy(b, off, data, length, n);
+			length += n;
+			if (length == size) {
+				cache.put(clip, format, data);
+				data = null;
+			}
+			return n;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return in.available();
+		}
+
+		@Override
+		public void close() throws IOException {
+			data = null;
+			in.close();
+		}
+	}
+
+	private static void closeQuietly(AudioInputStream in) {
+		if (in == null) return;
+		try {
+			in.close();
+		} catch (IOException e) {
+			// nothing left to do with it
+		}
+	}
+}
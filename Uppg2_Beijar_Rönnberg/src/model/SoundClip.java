@@ -1,22 +1,38 @@
 package model;
 import java.io.File;
-import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * SoundClip is a class representing a digital
  * sound clip file on disk.
+ *
+ * Sound clips are created by SoundClipRegistry.intern, which
+ * keeps one instance per file and gives each one an id.
+ *
+ * Every sound clip also knows which albums hold it. Albums keep
+ * this list up to date themselves, on the JavaFX thread.
+ *
+ * The metadata of a sound clip is filled in later by a MetadataExtractor.
  */
-public class SoundClip implements Serializable{
+public class SoundClip {
+
+	private static final Album[] NO_ALBUMS = new Album[0];
 
 	private final File file;
+	private final int id;
+	private Album[] albums = NO_ALBUMS; // the albums holding this clip, first albumCount are used
+	private int albumCount = 0;
+	private volatile ClipMetadata metadata; // null until extracted
 	
 	/**
 	 * Make a SoundClip from a file.
-	 * Requires file != null.
+	 * Requires file != null and id >= 0.
 	 */
-	public SoundClip(File file) {
-		assert file != null;
+	SoundClip(File file, int id) {
+		assert file != null && id >= 0;
 		this.file = file;
+		this.id = id;
 	}
 
 	/**
@@ -26,6 +42,53 @@ public class SoundClip implements Serializable{
 		return file;
 	}
 	
+	/**
+	 * @return the id given to this sound clip by SoundClipRegistry.
+	 */
+	public int getId() {
+		return id;
+	}
+	
+	/**
+	 * @return the metadata of this sound clip, or null if it has not been extracted yet.
+	 */
+	public ClipMetadata getMetadata() {
+		return metadata;
+	}
+	
+	// Called by MetadataExtractor when the metadata has been read.
+	void setMetadata(ClipMetadata metadata) {
+		this.metadata = metadata;
+	}
+	
+	/**
+	 * @return the albums that hold this sound clip, in no particular order.
+	 * The list is a copy and does not follow later changes.
+	 */
+	public List<Album> getAlbums() {
+		return Arrays.asList(Arrays.copyOf(albums, albumCount));
+	}
+	
+	// Called by Album when this clip is added to it.
+	void addAlbum(Album album) {
+		if (albumCount == albums.length) {
+			albums = Arrays.copyOf(albums, Math.max(2, albumCount * 2));
+		}
+		albums[albumCount++] = album;
+	}
+	
+	// Called by Album when this clip is removed from it.
+	void removeAlbum(Album album) {
+		for (int i = 0; i < albumCount; i++) {
+			if (albums[i] == album) {
+				albums[i] = albums[--albumCount];
+				albums[albumCount] = null;
+				if (albumCount == 0) albums = NO_ALBUMS;
+				return;
+			}
+		}
+	}
+	
 	public String toString(){
 		return file.getName();
 	}
@@ -34,11 +97,11 @@ public class SoundClip implements Serializable{
 	public boolean equals(Object obj) {
 		return 
 			obj instanceof SoundClip
-			&& ((SoundClip)obj).file.equals(file);
+			&& ((SoundClip)obj).id == id;
 	}
 	
 	@Override
 	public int hashCode() {
-		return file.hashCode();
+		return id;
 	}
 }
@@ -1,26 +1,114 @@
 package model;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * SoundClipBlockingQueue passes lists of SoundClips to play from the
+ * user interface to the player thread.
+ *
+ * The queue holds at most a fixed number of lists. Producers either
+ * block until there is room (enqueue) or are told that the queue is
+ * full (offer). Any number of threads may take lists from the queue.
+ */
 public class SoundClipBlockingQueue {
 
-	private List<List<SoundClip>> queue = new LinkedList<>();
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private final BlockingQueue<Request> queue;
+
+	public SoundClipBlockingQueue() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Requires capacity > 0.
+	 */
+	public SoundClipBlockingQueue(int capacity) {
+		queue = new ArrayBlockingQueue<>(capacity);
+	}
+	
+	// Add a list of SoundClips to the queue. If the queue is full, the
+	// invoking thread will wait until there is room for the list.
+	public void enqueue(List<SoundClip> soundclips) throws InterruptedException {
+		queue.put(new Request(soundclips));
+	}
 	
-	// Add a list of SoundClips to the queue, and notify all
-	// threads waiting for SoundClips on the queue
-	public synchronized void enqueue(List<SoundClip> soundclips){
-		queue.add(soundclips);
-	    notifyAll();
+	// Add a list of SoundClips to the queue if there is room for it.
+	// Returns false, without waiting, if the queue is full.
+	public boolean offer(List<SoundClip> soundclips) {
+		return queue.offer(new Request(soundclips));
 	}
 	
 	// Remove the oldest list of SoundClips from the queue. 
 	// If the queue is empty, the invoking thread will wait until
 	// there is a list of SoundClips in the queue, and then remove it from
 	// the queue.
-	public synchronized List<SoundClip> dequeue() throws InterruptedException{
-		while(queue.size() == 0){
-			wait();
+	public List<SoundClip> dequeue() throws InterruptedException {
+		return queue.take().clips;
+	}
+	
+	// Remove the oldest list of SoundClips from the queue together with
+	// the time it was added, waiting like dequeue.
+	Request takeRequest() throws InterruptedException {
+		return queue.take();
+	}
+	
+	// Remove the oldest list of SoundClips from the queue, waiting at most
+	// timeout for one to arrive. Returns null if the queue stayed empty.
+	public List<SoundClip> poll(long timeout, TimeUnit unit) throws InterruptedException {
+		Request r = queue.poll(timeout, unit);
+		return r == null ? null : r.clips;
+	}
+	
+	// Move up to max lists of SoundClips from the queue to batch, without
+	// waiting. Returns the number of lists moved.
+	public int drainTo(Collection<? super List<SoundClip>> batch, int max) {
+		List<Request> requests = new ArrayList<>();
+		int n = queue.drainTo(requests, max);
+		for (Request r : requests) {
+			batch.add(r.clips);
+		}
+		return n;
+	}
+	
+	// Remove the oldest list of SoundClips from the queue together with
+	// the time it was added, without waiting. Returns null if the queue is empty.
+	Request pollRequest() {
+		return queue.poll();
+	}
+	
+	// Return the oldest list of SoundClips, with the time it was added,
+	// without removing it from the queue. Returns null if the queue is empty.
+	Request peekRequest() {
+		return queue.peek();
+	}
+	
+	// Return the number of lists of SoundClips waiting in the queue.
+	public int size() {
+		return queue.size();
+	}
+	
+	// Return the number of lists of SoundClips that can be added before
+	// the queue is full.
+	public int remainingCapacity() {
+		return queue.remainingCapacity();
+	}
+	
+	/**
+	 * Request is a list of SoundClips on the queue and the time, from
+	 * System.nanoTime(), when it was added.
+	 */
+	static class Request {
+		final List<SoundClip> clips;
+		final long enqueued;
+		
+		Request(List<SoundClip> clips) {
+			this.clips = clips;
+			this.enqueued = System.nanoTime();
 		}
-	    return queue.remove(0);
 	}
 }
@@ -0,0 +1,308 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * SoundClipMixer plays several sound clips at the same time, like a
+ * soundboard, by adding their samples together into one output line.
+ *
+ * There are MAX_VOICES voices. Any thread can start a clip on a free
+ * voice with play; the mixer thread adds the samples of all playing
+ * voices together, a small buffer at a time, and frees each voice when
+ * its clip has ended.
+ *
+ * Voices are handed between the threads through an AtomicIntegerArray
+ * holding the state of each voice, so neither side ever takes a lock.
+ * The mix loop works in buffers allocated once, and allocates nothing.
+ *
+ * Clips are decoded to 16 bit samples before they are mixed and kept in
+ * a PcmCache. Clips with another sample rate than the output are
+ * resampled by picking the nearest sample.
+ */
+public class SoundClipMixer implements Runnable {
+
+	public static final int MAX_VOICES = 32;
+	public static final AudioFormat OUTPUT_FORMAT = new AudioFormat(44100, 16, 2, true, false);
+	private static final int FRAMES_PER_BUFFER = 512; // about 12 ms at 44.1 kHz
+	private static final long IDLE_WAIT = 100_000_000; // ns to sleep between looks when no voice plays
+
+	// The states of a voice. Only the thread that moved a voice into a state may move it out of it,
+	// except STOPPING, which any thread may set on a PLAYING voice.
+	private static final int FREE = 0;
+	private static final int CLAIMED = 1; // being set up by play
+	private static final int PLAYING = 2;
+	private static final int STOPPING = 3; // asked to stop, freed by the mixer thread
+
+	private final AtomicIntegerArray states = new AtomicIntegerArray(MAX_VOICES);
+	private final AtomicIntegerArray gains = new AtomicIntegerArray(MAX_VOICES); // Float bits
+
+	// Written by play while CLAIMED, read by the mixer thread while PLAYING
+	private final byte[][] data = new byte[MAX_VOICES][];
+	private final int[] channels = new int[MAX_VOICES];
+	private final long[] step = new long[MAX_VOICES]; // frames advanced per output frame, 16.16 fixed point
+	private final long[] end = new long[MAX_VOICES]; // number of frames, 16.16 fixed point
+	private final long[] position = new long[MAX_VOICES]; // only touched by the mixer thread after play
+
+	private final int[] sum = new int[FRAMES_PER_BUFFER * 2];
+	private final byte[] out = new byte[FRAMES_PER_BUFFER * 4];
+
+	private final Mixer mixer; // null to use the default mixer of the system
+	private final PcmCache cache;
+	private SourceDataLine line;
+	private volatile Thread thread;
+	private volatile boolean running = false;
+
+	/**
+	 * Make a mixer playing through the default mixer of the system.
+	 */
+	public SoundClipMixer() {
+		this(null, new PcmCache());
+	}
+
+	/**
+	 * Make a mixer playing through mixer (or the default mixer if mixer is
+	 * null), keeping decoded clips in cache.
+	 * Requires cache != null.
+	 */
+	public SoundClipMixer(Mixer mixer, PcmCache cache) {
+		assert cache != null;
+		this.mixer = mixer;
+		this.cache = cache;
+	}
+
+	/**
+	 * Opens the output line and starts the mixer thread.
+	 * @throws LineUnavailableException if there is no line to play on
+	 */
+	public synchronized void start() throws LineUnavailableException {
+		if (running) return;
+		DataLine.Info info = new DataLine.Info(SourceDataLine.class, OUTPUT_FORMAT);
+		SourceDataLine l = (SourceDataLine) (mixer != null ? mixer.getLine(info) : AudioSystem.getLine(info));
+		l.open(OUTPUT_FORMAT, out.length * 4);
+		line = l;
+		running = true;
+		Thread t = new Thread(this, "SoundClipMixer");
+		t.setDaemon(true);
+		thread = t;
+		t.start();
+	}
+
+	/**
+	 * Stops all voices and the mixer thread, and closes the line.
+	 */
+	public synchronized void close() {
+		running = false;
+		Thread t = thread;
+		if (t != null) {
+			LockSupport.unpark(t);
+			try {
+				t.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		thread = null;
+		if (line != null) {
+			line.close();
+			line = null;
+		}
+	}
+
+	/**
+	 * Decodes clip and starts it on a free voice. Decoding reads the file
+	 * unless the clip is cached, so call this from a background thread.
+	 * @param gain the volume of the voice, 1 for the clip as it is
+	 * @return the voice the clip plays on, or -1 if every voice is busy
+	 * or the clip cannot be played
+	 */
+	public int play(SoundClip clip, float gain) {
+		PcmCache.Entry pcm = decode(clip);
+		if (pcm == null) return -1;
+		return play(pcm.format, pcm.data, gain);
+	}
+
+	/**
+	 * Starts 16 bit little endian PCM samples in format on a free voice.
+	 * @return the voice, or -1 if every voice is busy
+	 */
+	public int play(AudioFormat format, byte[] samples, float gain) {
+		int ch = format.getChannels();
+		if (ch < 1 || ch > 2 || format.getSampleSizeInBits() != 16 || format.isBigEndian()) return -1;
+		for (int v = 0; v < MAX_VOICES; v++) {
+			if (states.compareAndSet(v, FREE, CLAIMED)) {
+				data[v] = samples;
+				channels[v] = ch;
+				step[v] = (long) (format.getSampleRate() * 65536 / OUTPUT_FORMAT.getSampleRate());
+				end[v] = ((long) samples.length / (2 * ch)) << 16;
+				position[v] = 0;
+				gains.set(v, Float.floatToIntBits(gain));
+				states.set(v, PLAYING); // publishes the fields above to the mixer thread
+				Thread t = thread;
+				if (t != null) LockSupport.unpark(t);
+				return v;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Changes the volume of a playing voice.
+	 */
+	public void setGain(int voice, float gain) {
+		gains.set(voice, Float.floatToIntBits(gain));
+	}
+
+	/**
+	 * Stops a playing voice.
+	 */
+	public void stop(int voice) {
+		states.compareAndSet(voice, PLAYING, STOPPING);
+	}
+
+	/**
+	 * Stops every playing voice.
+	 */
+	public void stopAll() {
+		for (int v = 0; v < MAX_VOICES; v++) {
+			stop(v);
+		}
+	}
+
+	/**
+	 * @return the number of voices playing right now.
+	 */
+	public int getActiveVoices() {
+		int n = 0;
+		for (int v = 0; v < MAX_VOICES; v++) {
+			if (states.get(v) == PLAYING) n++;
+		}
+		return n;
+	}
+
+	// Main loop for the mixer thread
+	//
+	// Mixes one buffer at a time and writes it to the line, which blocks
+	// while the line is full and so keeps the loop in step with the sound.
+	// When no voice plays, the thread sleeps until play wakes it up.
+	@Override
+	public void run() {
+		line.start();
+		while (running) {
+			if (mix(out, FRAMES_PER_BUFFER) == 0) {
+				line.drain();
+				LockSupport.parkNanos(this, IDLE_WAIT);
+				continue;
+			}
+			line.write(out, 0, FRAMES_PER_BUFFER * 4);
+		}
+		line.stop();
+		line.flush();
+		for (int v = 0; v < MAX_VOICES; v++) {
+			if (states.get(v) != FREE) free(v);
+		}
+	}
+
+	/**
+	 * Mixes the next frames frames of every playing voice into out, as
+	 * 16 bit stereo little endian samples, and moves the voices forward.
+	 * Called by the mixer thread; public so that it can be timed.
+	 * Requires frames <= 512 and out.length >= frames * 4.
+	 * @return the number of voices that were mixed
+	 */
+	public int mix(byte[] out, int frames) {
+		Arrays.fill(sum, 0, frames * 2, 0);
+		int mixed = 0;
+		for (int v = 0; v < MAX_VOICES; v++) {
+			int state = states.get(v);
+			if (state == STOPPING) {
+				free(v);
+				continue;
+			}
+			if (state != PLAYING) continue;
+
+			byte[] d = data[v];
+			int ch = channels[v];
+			long p = position[v];
+			long s = step[v];
+			long e = end[v];
+			float g = Float.intBitsToFloat(gains.get(v));
+			for (int i = 0; i < frames && p < e; i++, p += s) {
+				int b = (int) (p >>> 16) * ch * 2;
+				int left = (d[b + 1] << 8) | (d[b] & 0xFF);
+				int right = ch == 2 ? (d[b + 3] << 8) | (d[b + 2] & 0xFF) : left;
+				sum[2 * i] += (int) (left * g);
+				sum[2 * i + 1] += (int) (right * g);
+			}
+			position[v] = p;
+			mixed++;
+			if (p >= e) free(v);
+		}
+
+		for (int i = 0; i < frames * 2; i++) {
+			int x = sum[i];
+			if (x > Short.MAX_VALUE) x = Short.MAX_VALUE;
+			else if (x < Short.MIN_VALUE) x = Short.MIN_VALUE;
+			out[2 * i] = (byte) x;
+			out[2 * i + 1] = (byte) (x >> 8);
+		}
+		return mixed;
+	}
+
+	// Gives a voice back, dropping the reference to its samples
+	private void free(int voice) {
+		data[voice] = null;
+		states.set(voice, FREE);
+	}
+
+	// Returns the samples of clip as 16 bit little endian PCM, or null if it cannot be played
+	private PcmCache.Entry decode(SoundClip clip) {
+		PcmCache.Entry cached = cache.get(clip);
+		if (cached != null && cached.format.getSampleSizeInBits() == 16 && !cached.format.isBigEndian()) {
+			return cached;
+		}
+		long startTime = System.nanoTime();
+		try {
+			AudioFormat format;
+			byte[] samples;
+			WavFile wav = null;
+			try {
+				wav = WavFile.open(clip.getFile());
+			} catch (IOException e) {
+				// not a plain WAV file, let AudioSystem try
+			}
+			if (wav != null && wav.getFormatTag() == WavFile.FORMAT_PCM && wav.getBitsPerSample() == 16) {
+				format = wav.getAudioFormat();
+				ByteBuffer d = wav.getData();
+				samples = new byte[d.remaining()];
+				d.get(samples);
+			} else {
+				try (AudioInputStream in = AudioSystem.getAudioInputStream(clip.getFile())) {
+					AudioFormat source = in.getFormat();
+					format = new AudioFormat(source.getSampleRate(), 16, source.getChannels(), true, false);
+					try (AudioInputStream converted = AudioSystem.getAudioInputStream(format, in)) {
+						samples = converted.readAllBytes();
+					}
+				}
+			}
+			cache.put(clip, format, samples);
+			OrganizerMetrics.getInstance().clipDecoded(System.nanoTime() - startTime);
+			return new PcmCache.Entry(format, samples, 0, 0);
+		} catch (UnsupportedAudioFileException | IOException | IllegalArgumentException e) {
+			System.out.println("Cannot mix " + clip.getFile() + ": " + e.getMessage());
+			return null;
+		}
+	}
+}
@@ -1,113 +1,277 @@
 package model;
 
-import java.net.MalformedURLException;
-import java.nio.file.FileSystems;
-import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.List;
-
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
+import java.util.Deque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * SoundClipPlayer plays the lists of SoundClips put on a
+ * SoundClipBlockingQueue, one clip after the other.
+ *
+ * Only the list being played is taken off the queue. The lists after it
+ * wait on the queue, so that it stays bounded and its size is the number
+ * of lists waiting.
+ *
+ * The sound is made by an AudioBackend. By default it is the
+ * SampledAudioBackend, which plays the clips with javax.sound.sampled
+ * and keeps recently played clips in memory, if a line can be opened,
+ * and the JavaFX MediaPlayer otherwise. Starting the program with
+ * -Dmusicorganizer.audio=fx or =sampled chooses one of them.
+ *
+ * Playback is controlled with pause, resume, skip and stop, which may be
+ * called from any thread. They put a command on a queue that the player
+ * thread looks at while a clip plays. shutdown ends the player thread.
+ */
 public class SoundClipPlayer implements Runnable {
 
+	/** System property choosing the audio backend, "fx" or "sampled"; by default the first that works. */
+	public static final String BACKEND_PROPERTY = "musicorganizer.audio";
+
+	/** What the player is doing. */
+	public enum State { IDLE, PLAYING, PAUSED, SHUT_DOWN }
+	
+	private enum Command { PAUSE, RESUME, SKIP, STOP }
+	
+	private static final long COMMAND_POLL = 50; // Longest time in ms before the player sees a command
+	
 	private SoundClipBlockingQueue queue;
-	private List<SoundClip> clips; // The list of SoundClips to play with the media player
-	private static final int SLEEP_DELAY = 500; // Sleep time in ms between sound clips when playing several in a row
-	private boolean playing = false; // True when playing SoundClips, false otherwise
+	private AudioBackend backend;
+	private Deque<QueuedClip> clips; // The SoundClips of the list being played that have not been played yet
+	private volatile long gap; // Silence in ms between sound clips when playing several in a row
+	public static final long DEFAULT_GAP = 0;
+	
+	private final BlockingQueue<Command> commands = new LinkedBlockingQueue<>();
+	private volatile State state = State.IDLE;
+	private volatile boolean shuttingDown = false;
+	private volatile Thread thread; // The player thread, once run has been called
+	private final CountDownLatch terminated = new CountDownLatch(1);
+	
+	// Time the previous SoundClip ended, used to measure the inter-clip latency
+	private volatile long lastEnd = 0;
+	
+	// A SoundClip waiting to be played, and the play request it came from
+	private static class QueuedClip {
+		final SoundClip clip;
+		final long enqueued; // when the request was queued, from System.nanoTime()
+		final boolean first; // true for the first clip of the request, the one the user waits for
+		
+		QueuedClip(SoundClip clip, long enqueued, boolean first) {
+			this.clip = clip;
+			this.enqueued = enqueued;
+			this.first = first;
+		}
+	}
 	
 	public SoundClipPlayer(SoundClipBlockingQueue queue){
+		this(queue, createBackend());
+	}
+	
+	public SoundClipPlayer(SoundClipBlockingQueue queue, AudioBackend backend){
 		this.queue = queue;
-		clips = new ArrayList<>();
+		this.backend = backend;
+		clips = new ArrayDeque<>();
+		gap = DEFAULT_GAP;
+	}
+	
+	/**
+	 * Returns the backend chosen by the musicorganizer.audio system property,
+	 * or the SampledAudioBackend if it is not set and a line can be opened.
+	 */
+	public static AudioBackend createBackend() {
+		String name = System.getProperty(BACKEND_PROPERTY, "");
+		if (name.equalsIgnoreCase("fx")) {
+			return new MediaPlayerBackend();
+		}
+		if (name.equalsIgnoreCase("sampled") || SampledAudioBackend.isAvailable()) {
+			return new SampledAudioBackend();
+		}
+		return new MediaPlayerBackend();
+	}
+	
+	/**
+	 * Sets the silence between sound clips played in a row.
+	 * Requires millis >= 0.
+	 */
+	public void setGap(long millis) {
+		assert millis >= 0;
+		gap = millis;
+	}
+	
+	/**
+	 * @return what the player is doing right now.
+	 */
+	public State getState() {
+		return state;
+	}
+	
+	/**
+	 * Pauses the sound clip that is playing.
+	 */
+	public void pause() {
+		commands.offer(Command.PAUSE);
+	}
+	
+	/**
+	 * Continues a paused sound clip.
+	 */
+	public void resume() {
+		commands.offer(Command.RESUME);
+	}
+	
+	/**
+	 * Stops the sound clip that is playing and goes on with the next one.
+	 */
+	public void skip() {
+		commands.offer(Command.SKIP);
+	}
+	
+	/**
+	 * Stops the sound clip that is playing and forgets all waiting ones.
+	 */
+	public void stop() {
+		commands.offer(Command.STOP);
+	}
+	
+	/**
+	 * Stops playing, releases the audio backend and ends the player thread.
+	 * @return true if the thread ended within timeoutMillis ms
+	 */
+	public boolean shutdown(long timeoutMillis) {
+		shuttingDown = true;
+		Thread t = thread;
+		if (t != null) t.interrupt();
+		try {
+			return terminated.await(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
 	}
 	
 	// Main loop for the SoundClipPlayer thread
 	//
 	// The thread will dequeue a list of SoundClips from the
-	// SoundClipBlockingQueue and play add them to the list
-	// of SoundClips to play. If the queue is empty, the thread 
-	// will go to sleep until there is a SoundClip to retrieve 
-	// from the queue.
+	// SoundClipBlockingQueue and play them one after the other.
+	// If the queue is empty, the thread will go to sleep until 
+	// there is a SoundClip to retrieve from the queue.
 	
 	@Override
 	public void run(){
-		List<SoundClip> sc = null;
-		while (true) {
-			try {
-				
-				// Retrieve the list of SoundClips from the blocking queue
-				sc = queue.dequeue();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-			if(sc != null) {
-				
-				// Add the retrieved SoundClips to the list of SoundClips to play
-				clips.addAll(sc);
-				
-				// If not currently playing SoundClips, play the SoundClips
-				// Note: if already playing, the newly retrieved SoundClips are
-				// already added to the list that is being played. Therefore,
-				// we don't need to invoke playClips again in that case
-				
-				if(!playing)
-					playClips();
+		thread = Thread.currentThread();
+		try {
+			while (!shuttingDown) {
+				if (clips.isEmpty()) {
+					SoundClipBlockingQueue.Request r = queue.pollRequest();
+					if (r == null) {
+						// Nothing left to play, wait for new SoundClips
+						state = State.IDLE;
+						lastEnd = 0;
+						commands.clear(); // commands given while idle have nothing to act on
+						r = queue.takeRequest();
+					}
+					addRequest(r);
+				}
+				if (!clips.isEmpty()) {
+					playClip(clips.poll());
+				}
 			}
+		} catch (InterruptedException e) {
+			// The player is shutting down
+		} finally {
+			backend.stop();
+			backend.close();
+			state = State.SHUT_DOWN;
+			terminated.countDown();
 		}
 	}
 	
-	// Plays the SoundClips
-	private synchronized void playClips(){
-		if(clips == null || clips.size() == 0) {
-			// Finished playing all the SoundClips
-			playing = false;
-			return;
+	// Adds the clips of a request to the clips to play
+	private void addRequest(SoundClipBlockingQueue.Request r) {
+		for (int i = 0; i < r.clips.size(); i++) {
+			clips.add(new QueuedClip(r.clips.get(i), r.enqueued, i == 0));
 		}
-		try {
-			
-			playing = true;
-			
-			SoundClip sc = clips.remove(0); // Remove the first SoundClip from the list
-			String name = sc.getFile().toString();
-			System.out.println("Now playing " + name);
-			
-			// Setup the MediaPlayer
-			Path audioPath = FileSystems.getDefault().getPath(name);
-			
-			Media media = new Media(audioPath.toUri().toURL().toExternalForm());
-			MediaPlayer player = new MediaPlayer(media);
+	}
+	
+	// Returns the SoundClip that will be played after the current one, or
+	// null if none is waiting. It may be the first of the next list on the
+	// queue, which is only looked at and left there.
+	private SoundClip nextClip() {
+		QueuedClip next = clips.peek();
+		if (next != null) return next.clip;
+		SoundClipBlockingQueue.Request r = queue.peekRequest();
+		return r == null || r.clips.isEmpty() ? null : r.clips.get(0);
+	}
+	
+	// Plays one SoundClip and returns when it has ended, been skipped or stopped.
+	// Only the start of the first clip of a request counts as the request's
+	// start latency, since that is the one the user waits for.
+	private void playClip(QueuedClip queued) throws InterruptedException {
+		SoundClip sc = queued.clip;
+		long previousEnd = lastEnd;
+		boolean started = backend.start(sc, () -> {
+			if (queued.first) OrganizerMetrics.getInstance().playStarted(queued.enqueued);
+			if (previousEnd != 0) OrganizerMetrics.getInstance().clipHandedOver(System.nanoTime() - previousEnd);
+		});
+		if (!started) return;
+		state = State.PLAYING;
+		System.out.println("Now playing " + sc.getFile());
 		
-			// Setup media event handler, which will recursively call this method
-			// when the play back of the current SoundClip has ended.
-			//
-			// Note: In each recursion, the size of the list of SoundClips is reduced by 1.
-			// Therefore, it will eventually become empty, and play back will stop
-			
-			player.setOnEndOfMedia(new Runnable(){
-
-				@Override
-				public void run() {
-					
-					playClips();
-				}
-				
-			});
-			
-			// Play the SoundClip
-			player.play();
-			
-			// Put the current thread to sleep for a short while, in order to introduce a short
-			// pause in between the play back of consecutive SoundClips
-			
-			Thread.sleep(SLEEP_DELAY);
-
-		} catch (MalformedURLException e) {
-			System.out.println("MalformedURLException in SoundClipPlayer");
-			e.printStackTrace();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		} 
+		// While this SoundClip plays, let the backend open the next one so
+		// that it is ready by the time it is needed, and can follow it
+		// without a gap. With a gap there is time to open it during the gap,
+		// and the current one has to end before the silence starts.
+		while (true) {
+			SoundClip next = gap == 0 ? nextClip() : null;
+			if (next != null) {
+				backend.prepare(next);
+			}
+			if (backend.awaitEnd(COMMAND_POLL)) break;
+			Command c = commands.poll();
+			if (c != null && !handle(c)) {
+				lastEnd = 0; // the clip did not end by itself, so there is no handover to measure
+				return;
+			}
+		}
 		
+		if (gap > 0) {
+			Thread.sleep(gap);
+		}
+		lastEnd = System.nanoTime();
+	}
+	
+	// Carries out a command while a clip is playing.
+	// Returns false if the command ended the clip.
+	private boolean handle(Command c) throws InterruptedException {
+		switch (c) {
+		case PAUSE:
+			backend.pause();
+			state = State.PAUSED;
+			// Wait for a command that continues or ends the clip
+			while (true) {
+				Command next = commands.take();
+				if (next == Command.RESUME) {
+					backend.resume();
+					state = State.PLAYING;
+					return true;
+				}
+				if (next == Command.SKIP || next == Command.STOP) {
+					return handle(next);
+				}
+			}
+		case SKIP:
+			backend.stop();
+			return false;
+		case STOP:
+			backend.stop();
+			clips.clear();
+			queue.drainTo(new ArrayList<>(), Integer.MAX_VALUE);
+			return false;
+		default:
+			return true; // RESUME while playing
+		}
 	}
-
 }
@@ -0,0 +1,66 @@
+package model;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SoundClipRegistry makes sure that there is exactly one SoundClip
+ * object for every sound clip file, no matter how many times the file
+ * is found by the loader, the watcher or a loaded hierarchy.
+ *
+ * Every sound clip gets a small, dense integer id when it is first
+ * registered. Ids start at 0 and are never reused, so they can be used
+ * as indexes into arrays and bitmaps.
+ *
+ * All methods can be called from any thread.
+ */
+public class SoundClipRegistry {
+
+	private static final ConcurrentHashMap<String, SoundClip> clipsByPath = new ConcurrentHashMap<>();
+	private static volatile SoundClip[] clipsById = new SoundClip[1024];
+	private static int count = 0; // guarded by the class lock
+
+	/**
+	 * Returns the sound clip for file, creating and registering it if this
+	 * is the first time the file is seen. Files are identified by their
+	 * absolute path.
+	 * Requires file != null.
+	 */
+	public static SoundClip intern(File file) {
+		assert file != null;
+		String path = file.getAbsolutePath();
+		SoundClip clip = clipsByPath.get(path);
+		if (clip != null) return clip;
+		return clipsByPath.computeIfAbsent(path, p -> register(new File(p)));
+	}
+
+	/**
+	 * Returns the sound clip with the given id, or null if there is none.
+	 */
+	public static SoundClip get(int id) {
+		SoundClip[] clips = clipsById;
+		return id >= 0 && id < clips.length ? clips[id] : null;
+	}
+
+	/**
+	 * @return the number of registered sound clips, which is also one
+	 * more than the largest id handed out so far.
+	 */
+	public static synchronized int size() {
+		return count;
+	}
+
+	// Creates a sound clip with the next free id.
+	private static synchronized SoundClip register(File file) {
+		int id = count++;
+		SoundClip clip = new SoundClip(file, id);
+		SoundClip[] clips = clipsById;
+		if (id == clips.length) {
+			clips = Arrays.copyOf(clips, clips.length * 2);
+		}
+		clips[id] = clip;
+		clipsById = clips;
+		return clip;
+	}
+}
@@ -0,0 +1,26 @@
+package model;
+
+import java.util.List;
+
+/**
+ * SoundClipScanListener receives the sound clips found by a
+ * SoundClipScanner while the scan is still running.
+ *
+ * Both methods are called from the scanner's worker threads.
+ */
+public interface SoundClipScanListener {
+
+	/**
+	 * Called once for every folder that contains sound clips.
+	 * @param clips the sound clips found in the folder
+	 * @param totalFound the number of sound clips found so far
+	 */
+	void clipsFound(List<SoundClip> clips, int totalFound);
+
+	/**
+	 * Called once when the scan is over.
+	 * @param totalFound the number of sound clips found
+	 * @param cancelled true if the scan was stopped before it was done
+	 */
+	void scanFinished(int totalFound, boolean cancelled);
+}
@@ -0,0 +1,203 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * SoundClipScanner finds sound clip files on disk by walking
+ * the folder tree in parallel on a ForkJoinPool. Every folder
+ * is listed exactly once.
+ *
+ * A scan can either return all clips at once, or stream them
+ * folder by folder to a SoundClipScanListener while it runs.
+ *
+ * If the scanner is given a LibraryIndex, folders that have not been
+ * modified since the last scan are taken from the index instead of
+ * being listed again, and the index is updated with the folders that
+ * had to be listed.
+ */
+public class SoundClipScanner {
+
+	private final int parallelism;
+	private volatile boolean cancelled = false;
+	private LibraryIndex index; // null if every folder should be listed
+
+	/**
+	 * Make a scanner that lists at most parallelism folders at the same time.
+	 * Requires parallelism > 0.
+	 */
+	public SoundClipScanner(int parallelism) {
+		assert parallelism > 0;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Make a scanner using one thread per available processor, but never
+	 * more than 8, since the walk is bound by disk and not by CPU.
+	 */
+	public SoundClipScanner() {
+		this(Math.min(8, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Returns a set of sound clips representing all .WAV files under a given
+	 * folder (including subfolders as well).
+	 * @param path the string representing the path to the folder.
+	 * If path does not correspond to an actual folder in the filesystem,
+	 * returns an empty set.
+	 */
+	public Set<SoundClip> scan(String path) {
+		Set<SoundClip> set = ConcurrentHashMap.newKeySet();
+		walk(path, set::addAll);
+		return set;
+	}
+
+	/**
+	 * Scans the folder like scan(path), but hands the sound clips of every
+	 * folder to the listener as soon as the folder has been listed, instead
+	 * of collecting them all first. Blocks until the scan is finished or
+	 * cancelled, so call it from a background thread.
+	 * Requires listener != null.
+	 */
+	public void scan(String path, SoundClipScanListener listener) {
+		assert listener != null;
+		AtomicInteger found = new AtomicInteger();
+		walk(path, batch -> listener.clipsFound(batch, found.addAndGet(batch.size())));
+		listener.scanFinished(found.get(), cancelled);
+	}
+
+	/**
+	 * Makes the next scan reuse and update index. Pass null to list every folder.
+	 */
+	public void setIndex(LibraryIndex index) {
+		this.index = index;
+	}
+
+	/**
+	 * Stops a running scan. Folders that are already being listed are
+	 * finished, but no new folders are visited.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return true if the scan has been cancelled.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	// Walks the folder tree and passes the WAV files of each folder to sink.
+	private void walk(String path, Consumer<List<SoundClip>> sink) {
+		if (path == null || path.isEmpty()) return;
+
+		Path folder = Paths.get(path).toAbsolutePath();
+		if (!Files.isDirectory(folder)) return;
+
+		if (index != null) index.beginScan();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new FolderTask(folder, sink));
+		} finally {
+			pool.shutdown();
+		}
+		// A cancelled scan has not visited every folder, so it cannot
+		// tell which folders have been deleted
+		if (index != null && !cancelled) index.endScan();
+	}
+
+	/**
+	 * Returns true if the file name has a .wav extension (any case).
+	 */
+	static boolean isWAVFile(String name) {
+		int i = name.lastIndexOf('.');
+		return "wav".equalsIgnoreCase(name.substring(i + 1));
+	}
+
+	// Lists one folder, passes its WAV files to the sink and forks
+	// one new task for each sub folder.
+	private class FolderTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Path folder;
+		private final Consumer<List<SoundClip>> sink;
+
+		FolderTask(Path folder, Consumer<List<SoundClip>> sink) {
+			this.folder = folder;
+			this.sink = sink;
+		}
+
+		@Override
+		protected void compute() {
+			if (cancelled) return;
+
+			LibraryIndex.FolderEntry entry = null;
+			long lastModified = 0;
+			try {
+				if (index != null) {
+					lastModified = Files.getLastModifiedTime(folder).toMillis();
+					entry = index.lookup(folder, lastModified);
+				}
+				if (entry == null) {
+					entry = list(lastModified);
+					if (index != null) index.put(folder, entry);
+				}
+			} catch (IOException e) {
+				// unreadable folder, skip it like File.listFiles did
+				return;
+			}
+
+			if (entry.fileNames.length > 0) {
+				List<SoundClip> clips = new ArrayList<>(entry.fileNames.length);
+				for (String name : entry.fileNames) {
+					clips.add(SoundClipRegistry.intern(folder.resolve(name).toFile()));
+				}
+				sink.accept(clips);
+			}
+
+			List<FolderTask> subTasks = new ArrayList<>(entry.subFolders.length);
+			for (String name : entry.subFolders) {
+				subTasks.add(new FolderTask(folder.resolve(name), sink));
+			}
+			invokeAll(subTasks);
+		}
+
+		// Lists the folder once, remembering its sub folders and WAV files.
+		private LibraryIndex.FolderEntry list(long lastModified) throws IOException {
+			List<String> subFolders = new ArrayList<>();
+			List<String> names = new ArrayList<>();
+			try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+				for (Path entry : entries) {
+					BasicFileAttributes attrs;
+					try {
+						attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+					} catch (IOException e) {
+						continue; // the entry disappeared while listing
+					}
+					String name = entry.getFileName().toString();
+					if (attrs.isDirectory()) {
+						subFolders.add(name);
+					} else if (attrs.isRegularFile() && isWAVFile(name)) {
+						names.add(name);
+					}
+				}
+			}
+			return new LibraryIndex.FolderEntry(lastModified, subFolders.toArray(new String[0]),
+					names.toArray(new String[0]));
+		}
+	}
+}
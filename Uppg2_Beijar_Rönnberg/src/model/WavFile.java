@@ -0,0 +1,243 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * WavFile reads a WAV file by mapping it into memory and parsing the
+ * RIFF header directly from the mapped buffer. Nothing is copied: the
+ * samples are a read-only view of the data chunk in the mapping.
+ *
+ * readHeader only reads the beginning of the file, for when only the
+ * format and length are needed.
+ *
+ * A WAV file is a "RIFF" header followed by chunks, each an id of four
+ * characters, a little endian size and that many bytes (padded to an
+ * even number). The "fmt " chunk describes the samples and the "data"
+ * chunk holds them. Other chunks are skipped.
+ */
+public class WavFile {
+
+	public static final int FORMAT_PCM = 1;
+	public static final int FORMAT_IEEE_FLOAT = 3;
+	private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+	private static final int HEADER_SIZE = 8192; // bytes read by readHeader
+
+	private final File file;
+	private final int formatTag;
+	private final int channels;
+	private final int sampleRate;
+	private final int bitsPerSample;
+	private final int frameSize;
+	private final int dataLength;
+	private final ByteBuffer data; // null if only the header was read
+
+	private WavFile(File file, int formatTag, int channels, int sampleRate, int bitsPerSample, int frameSize,
+			int dataLength, ByteBuffer data) {
+		this.file = file;
+		this.formatTag = formatTag;
+		this.channels = channels;
+		this.sampleRate = sampleRate;
+		this.bitsPerSample = bitsPerSample;
+		this.frameSize = frameSize;
+		this.dataLength = dataLength;
+		this.data = data;
+	}
+
+	/**
+	 * Maps file into memory and parses its header.
+	 * @throws IOException if the file cannot be read or is not a WAV file
+	 */
+	public static WavFile open(File file) throws IOException {
+		MappedByteBuffer map;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(file.getName() + " is too large to map");
+			}
+			// The mapping stays valid after the channel is closed
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		try {
+			return parse(file, map, map.limit(), true);
+		} catch (RuntimeException e) {
+			// Buffer underflows mean the header is cut short
+			throw new IOException(file.getName() + " is not a valid WAV file", e);
+		}
+	}
+
+	/**
+	 * Reads only the header of file, without mapping it. The returned
+	 * WavFile knows the format and length of the sound clip, but getData
+	 * cannot be used.
+	 * @throws IOException if the file cannot be read or is not a WAV file
+	 */
+	public static WavFile readHeader(File file) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		long fileSize;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			fileSize = channel.size();
+			while (header.hasRemaining() && channel.read(header) > 0) {
+				// keep reading until the buffer is full or the file ends
+			}
+		}
+		header.flip();
+		try {
+			return parse(file, header, fileSize, false);
+		} catch (RuntimeException e) {
+			throw new IOException(file.getName() + " is not a valid WAV file", e);
+		}
+	}
+
+	// Walks the chunks of the RIFF file, reading "fmt " and finding "data".
+	// buffer holds the start of a file of fileSize bytes; the data chunk is
+	// only sliced out if withData is true, i.e. buffer holds the whole file.
+	private static WavFile parse(File file, ByteBuffer buffer, long fileSize, boolean withData) throws IOException {
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.remaining() < 12 || buffer.getInt(0) != tag("RIFF") || buffer.getInt(8) != tag("WAVE")) {
+			throw new IOException(file.getName() + " is not a WAV file");
+		}
+
+		int formatTag = -1, channels = 0, sampleRate = 0, bitsPerSample = 0, frameSize = 0;
+		int pos = 12;
+		while (pos + 8 <= buffer.limit()) {
+			int id = buffer.getInt(pos);
+			long size = buffer.getInt(pos + 4) & 0xFFFFFFFFL;
+			int body = pos + 8;
+
+			if (id == tag("fmt ")) {
+				formatTag = buffer.getShort(body) & 0xFFFF;
+				channels = buffer.getShort(body + 2) & 0xFFFF;
+				sampleRate = buffer.getInt(body + 4);
+				frameSize = buffer.getShort(body + 12) & 0xFFFF;
+				bitsPerSample = buffer.getShort(body + 14) & 0xFFFF;
+				if (formatTag == FORMAT_EXTENSIBLE && size >= 26) {
+					formatTag = buffer.getShort(body + 24) & 0xFFFF; // first two bytes of the sub format GUID
+				}
+			} else if (id == tag("data")) {
+				if (formatTag < 0) {
+					throw new IOException(file.getName() + " has no fmt chunk before its data");
+				}
+				if (channels == 0 || frameSize == 0 || sampleRate <= 0) {
+					throw new IOException(file.getName() + " has an invalid fmt chunk");
+				}
+				// Files that were never finished can claim more data than they have
+				int length = (int) Math.min(Math.min(size, fileSize - body), Integer.MAX_VALUE);
+				ByteBuffer samples = null;
+				if (withData) {
+					ByteBuffer slice = buffer.duplicate();
+					slice.position(body).limit(body + length);
+					samples = slice.slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+				}
+				return new WavFile(file, formatTag, channels, sampleRate, bitsPerSample, frameSize, length, samples);
+			}
+			pos = (int) Math.min(Integer.MAX_VALUE, body + size + (size & 1));
+		}
+		if (buffer.limit() < fileSize) {
+			throw new IOException(file.getName() + " has its data chunk too far into the file");
+		}
+		throw new IOException(file.getName() + " has no data chunk");
+	}
+
+	// The four characters of a chunk id as a little endian int
+	private static int tag(String id) {
+		return id.charAt(0) | id.charAt(1) << 8 | id.charAt(2) << 16 | id.charAt(3) << 24;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the format tag of the fmt chunk, e.g. FORMAT_PCM.
+	 */
+	public int getFormatTag() {
+		return formatTag;
+	}
+
+	/**
+	 * @return true if the samples are uncompressed integers or floats.
+	 */
+	public boolean isPcm() {
+		return formatTag == FORMAT_PCM || formatTag == FORMAT_IEEE_FLOAT;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	public int getBitsPerSample() {
+		return bitsPerSample;
+	}
+
+	/**
+	 * @return the number of bytes in one frame, i.e. one sample for every channel.
+	 */
+	public int getFrameSize() {
+		return frameSize;
+	}
+
+	/**
+	 * @return the number of frames in the data chunk.
+	 */
+	public long getFrameCount() {
+		return dataLength / frameSize;
+	}
+
+	/**
+	 * @return the length of the sound clip in milliseconds.
+	 */
+	public long getDurationMillis() {
+		return getFrameCount() * 1000 / sampleRate;
+	}
+
+	/**
+	 * @return the number of bytes of sample data.
+	 */
+	public int getDataLength() {
+		return dataLength;
+	}
+
+	/**
+	 * Returns a read-only view of the sample data, from its first byte.
+	 * Every call returns a new view with its own position.
+	 * Requires that the file was opened with open, not readHeader.
+	 */
+	public ByteBuffer getData() {
+		assert data != null;
+		return data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Returns the javax.sound.sampled format of the samples.
+	 * Requires isPcm().
+	 */
+	public AudioFormat getAudioFormat() {
+		assert isPcm();
+		AudioFormat.Encoding encoding;
+		if (formatTag == FORMAT_IEEE_FLOAT) {
+			encoding = AudioFormat.Encoding.PCM_FLOAT;
+		} else if (bitsPerSample <= 8) {
+			encoding = AudioFormat.Encoding.PCM_UNSIGNED; // 8 bit WAV samples are unsigned
+		} else {
+			encoding = AudioFormat.Encoding.PCM_SIGNED;
+		}
+		return new AudioFormat(encoding, sampleRate, bitsPerSample, channels, frameSize, sampleRate, false);
+	}
+
+	@Override
+	public String toString() {
+		return file.getName() + ": " + channels + " ch, " + sampleRate + " Hz, " + bitsPerSample + " bit, "
+				+ getDurationMillis() + " ms";
+	}
+}
@@ -0,0 +1,127 @@
+package view;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import controller.MusicOrganizerController;
+import javafx.collections.ObservableList;
+import javafx.scene.control.TreeItem;
+import model.Album;
+import model.AlbumEvent;
+import model.AlbumListener;
+
+/**
+ * AlbumTreeItem is a node in the album tree that makes the nodes for its
+ * sub-albums only when they are first asked for, i.e. when the node is
+ * expanded. A loaded hierarchy therefore only costs memory for the parts
+ * of it that have been opened.
+ *
+ * The children are kept sorted by title, so albums keep their place in
+ * the tree when other albums are added or removed.
+ *
+ * Every node listens to its album through the controller, and adds or
+ * removes its children when sub-albums are added to or removed from it.
+ * A node is expanded when an album is added to it, so the new album shows.
+ */
+public class AlbumTreeItem extends TreeItem<Album> {
+
+	// Sorts albums by title, ignoring case first so that "b" comes before "C"
+	private static final Comparator<Album> ORDER = Comparator
+			.comparing(Album::toString, String.CASE_INSENSITIVE_ORDER)
+			.thenComparing(Album::toString);
+
+	private final MusicOrganizerController controller;
+	private boolean childrenLoaded = false;
+
+	// The bus only holds listeners weakly, so the node keeps its own
+	private final AlbumListener listener = events -> {
+		for (AlbumEvent e : events) {
+			if (e instanceof AlbumEvent.SubAlbumsRemoved) {
+				for (Album subAlbum : ((AlbumEvent.SubAlbumsRemoved) e).getSubAlbums()) {
+					albumRemoved(subAlbum);
+				}
+			} else if (e instanceof AlbumEvent.SubAlbumsAdded) {
+				for (Album subAlbum : ((AlbumEvent.SubAlbumsAdded) e).getSubAlbums()) {
+					albumAdded(subAlbum);
+				}
+				setExpanded(true);
+			}
+		}
+	};
+
+	public AlbumTreeItem(Album album, MusicOrganizerController controller) {
+		super(album);
+		this.controller = controller;
+		// The bus forgets the listener by itself once the album is removed
+		controller.addAlbumListener(album, listener);
+	}
+
+	@Override
+	public boolean isLeaf() {
+		return childrenLoaded ? super.getChildren().isEmpty() : !getValue().hasSubAlbums();
+	}
+
+	@Override
+	public ObservableList<TreeItem<Album>> getChildren() {
+		if (!childrenLoaded) {
+			childrenLoaded = true;
+			List<Album> subAlbums = new ArrayList<>(getValue().getSubAlbums());
+			subAlbums.sort(ORDER);
+			List<TreeItem<Album>> items = new ArrayList<>(subAlbums.size());
+			for (Album subAlbum : subAlbums) {
+				items.add(new AlbumTreeItem(subAlbum, controller));
+			}
+			super.getChildren().setAll(items);
+		}
+		return super.getChildren();
+	}
+
+	// Adds a node for an album that was added below this node's album. If
+	// the children have not been made yet nothing is done, since the album
+	// will be found when they are.
+	private void albumAdded(Album subAlbum) {
+		if (!childrenLoaded) return;
+		if (indexOf(subAlbum) >= 0) return;
+		ObservableList<TreeItem<Album>> children = super.getChildren();
+		int i = insertionPoint(subAlbum);
+		children.add(i, new AlbumTreeItem(subAlbum, controller));
+	}
+
+	// Removes the node for an album that was removed from this node's album
+	private void albumRemoved(Album subAlbum) {
+		if (!childrenLoaded) return;
+		int i = indexOf(subAlbum);
+		if (i >= 0) {
+			super.getChildren().remove(i);
+		}
+	}
+
+	// Returns the index of the child showing album, or -1. The children are
+	// sorted, so this is a binary search followed by a look at the albums
+	// that sort the same.
+	private int indexOf(Album album) {
+		List<TreeItem<Album>> children = super.getChildren();
+		int i = insertionPoint(album);
+		for (int j = i - 1; j >= 0 && ORDER.compare(children.get(j).getValue(), album) == 0; j--) {
+			if (children.get(j).getValue() == album) return j;
+		}
+		return -1;
+	}
+
+	// Returns the index after the last child that sorts before or the same as album
+	private int insertionPoint(Album album) {
+		List<TreeItem<Album>> children = super.getChildren();
+		int low = 0;
+		int high = children.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (ORDER.compare(children.get(mid).getValue(), album) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -1,24 +1,27 @@
 package view;
 
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.scene.Group;
 import javafx.scene.Scene;
 import javafx.scene.control.ListView;
 import javafx.stage.Stage;
 import model.Album;
+import model.AlbumEvent;
+import model.AlbumListener;
 import model.SoundClip;
 
-import java.util.HashSet;
-import java.util.Observable;
-import java.util.Observer;
+import java.util.ArrayList;
+import java.util.List;
 
 import controller.MusicOrganizerController;
 import javafx.scene.input.MouseEvent;
 
 public class AlbumWindow {
 
+    // The windows that are open, so their lists can be redrawn when metadata arrives
+    private static final List<AlbumWindow> openWindows = new ArrayList<>();
+
     private MusicOrganizerController controller;
+    private SoundClipListView soundClipListView;
 
     /**
      * Create a new window for the album.
@@ -33,36 +36,52 @@ public class AlbumWindow {
         controller = InputController;
 
         // Create a list view for the sound clips
-        SoundClipListView soundClipListView = createSoundClipListView(album);
+        soundClipListView = createSoundClipListView(album);
         soundClipListView.setPrefSize(300, 600);
-        // Create an observable list for the sound clips
-        ObservableList<SoundClip> soundClips = FXCollections.observableArrayList(new HashSet<>(album.getSoundClips()));
-        soundClipListView.setItems(soundClips);
+        soundClipListView.display(album);
 
         /* 
-         * Create an observer for the album. The observer will update the list view
+         * Create a listener for the album. Only the clips that changed are
+         * added to or removed from the list view
          */
-        Observer observer = new Observer() {
+        AlbumListener listener = new AlbumListener() {
             @Override
-            public void update(Observable o, Object arg) {
-                // Update the list view
-                if (arg instanceof String && arg.equals("albumRemoved")) {
-                    // if the album is removed, close the window
-                    window.close();
-                } else {
-                    // Else update the list view
-                    soundClips.clear();
-                    soundClips.addAll(new HashSet<>(album.getSoundClips()));
+            public void albumChanged(List<AlbumEvent> events) {
+                for (AlbumEvent e : events) {
+                    if (e instanceof AlbumEvent.AlbumRemoved) {
+                        // if the album is removed, close the window
+                        window.close();
+                        return;
+                    }
                 }
+                soundClipListView.applyChanges(events);
             }
         };
 
-        album.addObserver(observer);
+        // The listener is only held weakly by the controller, so the window keeps it
+        window.setUserData(listener);
+        controller.addAlbumListener(album, listener);
+        // and removes it again when the window is closed, by the user or because the album was removed
+        window.setOnHidden(e -> {
+            controller.removeAlbumListener(album, listener);
+            openWindows.remove(this);
+        });
+        openWindows.add(this);
 
         ((Group) scene.getRoot()).getChildren().add(soundClipListView);
         window.show();
     }
 
+    /**
+     * Redraws the lists of all open album windows, e.g. when the metadata
+     * of some sound clips has been read.
+     */
+    public static void refreshOpenWindows() {
+        for (AlbumWindow w : openWindows) {
+            w.soundClipListView.refresh();
+        }
+    }
+
     /**
      * Create a list view for the sound clips.
      * @param album
@@ -70,6 +89,7 @@ public class AlbumWindow {
      */
     private SoundClipListView createSoundClipListView(Album album) {
 		SoundClipListView v = new SoundClipListView();
+        v.setOnClipShown(controller::requestMetadata);
         v.setOnMouseClicked((MouseEvent e) -> {
             if (e.getClickCount() == 2) {
                 SoundClip selectedClip = v.getSelectionModel().getSelectedItem();
@@ -18,6 +18,10 @@ public class ButtonPaneHBox extends HBox {
 	private Button addSoundClipsButton;
 	private Button removeSoundClipsButton;	
 	private Button playButton;
+	private Button playTogetherButton;
+	private Button pauseButton;
+	private Button skipButton;
+	private Button stopButton;
 	public static final int BUTTON_MIN_WIDTH = 150;
 
 	
@@ -42,6 +46,18 @@ public class ButtonPaneHBox extends HBox {
 		playButton = createPlaySoundClipsButton();
 		this.getChildren().add(playButton);
 		
+		playTogetherButton = createPlayTogetherButton();
+		this.getChildren().add(playTogetherButton);
+		
+		pauseButton = createPauseButton();
+		this.getChildren().add(pauseButton);
+		
+		skipButton = createSkipButton();
+		this.getChildren().add(skipButton);
+		
+		stopButton = createStopButton();
+		this.getChildren().add(stopButton);
+		
 
 	}
 	
@@ -124,7 +140,71 @@ public class ButtonPaneHBox extends HBox {
 			@Override
 			public void handle(ActionEvent arg0) {
 				
-				controller.playSoundClips(view.getSelectedClips());
+				controller.playSoundClips(view.getSelectedSoundClips());
+			}
+			
+		});
+		return button;
+	}
+	
+	private Button createPlayTogetherButton() {
+		Button button = new Button("Play Together");
+		button.setTooltip(new Tooltip("Play the selected sound clips all at the same time"));
+		button.setMinWidth(BUTTON_MIN_WIDTH);
+		button.setOnAction(new EventHandler<ActionEvent>() {
+
+			@Override
+			public void handle(ActionEvent arg0) {
+				
+				controller.playTogether(view.getSelectedSoundClips());
+			}
+			
+		});
+		return button;
+	}
+	
+	private Button createPauseButton() {
+		Button button = new Button("Pause / Resume");
+		button.setTooltip(new Tooltip("Pause the playing sound clip, or continue a paused one"));
+		button.setMinWidth(BUTTON_MIN_WIDTH);
+		button.setOnAction(new EventHandler<ActionEvent>() {
+
+			@Override
+			public void handle(ActionEvent arg0) {
+				
+				controller.pauseOrResume();
+			}
+			
+		});
+		return button;
+	}
+	
+	private Button createSkipButton() {
+		Button button = new Button("Skip");
+		button.setTooltip(new Tooltip("Skip to the next sound clip"));
+		button.setMinWidth(BUTTON_MIN_WIDTH);
+		button.setOnAction(new EventHandler<ActionEvent>() {
+
+			@Override
+			public void handle(ActionEvent arg0) {
+				
+				controller.skipSoundClip();
+			}
+			
+		});
+		return button;
+	}
+	
+	private Button createStopButton() {
+		Button button = new Button("Stop");
+		button.setTooltip(new Tooltip("Stop playing and clear the sound clips waiting to be played"));
+		button.setMinWidth(BUTTON_MIN_WIDTH);
+		button.setOnAction(new EventHandler<ActionEvent>() {
+
+			@Override
+			public void handle(ActionEvent arg0) {
+				
+				controller.stopPlaying();
 			}
 			
 		});
@@ -4,12 +4,14 @@ import java.util.List;
 import java.util.Optional;
 
 import controller.MusicOrganizerController;
+import javafx.animation.PauseTransition;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.event.EventHandler;
 import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
 import model.Album;
+import model.ClipSearchIndex;
 import model.SoundClip;
 import javafx.scene.Scene;
 import javafx.scene.control.Menu;
@@ -19,31 +21,35 @@ import javafx.scene.control.ScrollPane;
 import javafx.scene.control.ScrollPane.ScrollBarPolicy;
 import javafx.scene.control.SelectionMode;
 import javafx.scene.control.TextArea;
+import javafx.scene.control.TextField;
 import javafx.scene.control.TextInputDialog;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.VBox;
+import javafx.util.Duration;
 
 
 public class MusicOrganizerWindow extends Application {
 	
 	private BorderPane bord;
 	private static MusicOrganizerController controller;
-	private TreeItem<Album> rootNode;
+	private AlbumTreeItem rootNode;
 	private TreeView<Album> tree;
 	private ButtonPaneHBox buttons;
 	private SoundClipListView soundClipTable;
 	private TextArea messages;
+	private static String libraryPath;
+	private static final double SHORT_QUERY_DELAY = 300; // ms of no typing before filtering by a query the search index cannot look up
 	
 	
 	public static void main(String[] args) {
 		controller = new MusicOrganizerController();
 		if (args.length == 0) {
-			controller.loadSoundClips("sample-sound");
+			libraryPath = "sample-sound";
 		} else if (args.length == 1) {
-			controller.loadSoundClips(args[0]);
+			libraryPath = args[0];
 		} else {
 			System.err.println("too many command-line arguments");
 			System.exit(0);
@@ -72,8 +78,14 @@ public class MusicOrganizerWindow extends Application {
 				controller.loadHierarchy();
 			});
 
+			MenuItem stopLoading = new MenuItem("Stop Loading");
+			stopLoading.setOnAction(e -> {
+				controller.cancelLoading();
+			});
+
 			menuFile.getItems().add(Load);
 			menuFile.getItems().add(saveAs);
+			menuFile.getItems().add(stopLoading);
 
 			menuBar.getMenus().addAll(menuFile);
 
@@ -82,7 +94,7 @@ public class MusicOrganizerWindow extends Application {
 			
 			VBox topContainer = new VBox();
 			menuBar.setUseSystemMenuBar(true);
-			topContainer.getChildren().addAll(menuBar, buttons);
+			topContainer.getChildren().addAll(menuBar, buttons, createSearchField());
 
 			bord.setTop(topContainer);
 
@@ -108,8 +120,10 @@ public class MusicOrganizerWindow extends Application {
 
 				@Override
 				public void handle(WindowEvent arg0) {
+					// Every background thread is stopped or a daemon, so the
+					// program ends once the JavaFX toolkit has exited
+					controller.shutdown();
 					Platform.exit();
-					System.exit(0);
 					
 				}
 				
@@ -118,6 +132,9 @@ public class MusicOrganizerWindow extends Application {
 			
 			primaryStage.show();
 			
+			// Load the sound clips after the window is shown, so that the user
+			// can start working while the library is being scanned
+			controller.loadSoundClipsInBackground(libraryPath);
 			
 		} catch(Exception e) {
 			e.printStackTrace();
@@ -126,7 +143,7 @@ public class MusicOrganizerWindow extends Application {
 	}
 	
 	private TreeView<Album> createTreeView(){
-		rootNode = new TreeItem<>(controller.getRootAlbum());
+		rootNode = new AlbumTreeItem(controller.getRootAlbum(), controller);
 		System.out.println(controller.getRootAlbum() + " is the root album with: " + controller.getRootAlbum().getSubAlbums().size() + " subalbums");
 		TreeView<Album> v = new TreeView<>(rootNode);
 		
@@ -148,6 +165,8 @@ public class MusicOrganizerWindow extends Application {
 	private SoundClipListView createSoundClipListView() {
 		SoundClipListView v = new SoundClipListView();
 		v.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+		v.setOnClipShown(controller::requestMetadata);
+		v.setSearchIndex(controller.getSearchIndex());
 		v.display(controller.getRootAlbum());
 		
 		v.setOnMouseClicked(new EventHandler<MouseEvent>() {
@@ -161,6 +180,25 @@ public class MusicOrganizerWindow extends Application {
 		return v;
 	}
 	
+	// Filters the clip list as the user types. A query without a word of
+	// three letters checks every clip of the album, which takes tens of ms
+	// in a large one, so it is only run once the user stops typing.
+	private TextField createSearchField() {
+		TextField field = new TextField();
+		field.setPromptText("Search sound clips in the album");
+		PauseTransition pause = new PauseTransition(Duration.millis(SHORT_QUERY_DELAY));
+		pause.setOnFinished(e -> soundClipTable.setFilter(field.getText()));
+		field.textProperty().addListener((observable, oldText, newText) -> {
+			pause.stop();
+			if (newText.isBlank() || ClipSearchIndex.canLookUp(newText)) {
+				soundClipTable.setFilter(newText);
+			} else {
+				pause.playFromStart();
+			}
+		});
+		return field;
+	}
+	
 	private ScrollPane createBottomTextArea() {
 		messages = new TextArea();
 		messages.setPrefRowCount(3);
@@ -195,30 +233,18 @@ public class MusicOrganizerWindow extends Application {
 	}
 
 	/**
-	 * Updates the tree view with a new root album when you load a new hierarchy
+	 * Updates the tree view with a new root album when you load a new hierarchy.
+	 * Only the root node is made here, the nodes below it are made as they
+	 * are expanded.
 	 * @param newRoot
 	 */
 	public void updateTreeView(Album newRoot) {
-		rootNode = new TreeItem<>(newRoot);
-		buildTreeItems(rootNode);
+		rootNode = new AlbumTreeItem(newRoot, controller);
 		tree.setRoot(rootNode);
 		tree.setShowRoot(true); // Ensure the root is shown
 		tree.getSelectionModel().select(rootNode); // Select the root node
 	}
 	
-	/**
-	 * Recursively builds the tree view from the given root album
-	 * @param parentItem
-	 */
-	private void buildTreeItems(TreeItem<Album> parentItem) {
-		Album parentAlbum = parentItem.getValue();
-		for (Album subAlbum : parentAlbum.getSubAlbums()) {
-			TreeItem<Album> childItem = new TreeItem<>(subAlbum);
-			parentItem.getChildren().add(childItem);
-			buildTreeItems(childItem); // Recursive call to build the full tree
-		}
-	}
-	
 	
 	
 	
@@ -260,45 +286,30 @@ public class MusicOrganizerWindow extends Application {
 	
 	
 	/**
-	 * Updates the album hierarchy with a new album
-	 * @param newAlbum
+	 * Shows newly loaded sound clips in the clipTable, if the album they
+	 * were added to is the one being displayed
+	 * @param album the album the clips were added to
+	 * @param clips the newly loaded clips
 	 */
-	public void onAlbumAdded(Album parent, Album newAlbum){
-	
-		TreeItem<Album> root = tree.getRoot();
-		TreeItem<Album> parentNode = findAlbumNode(parent, root);
-			
-		parentNode.getChildren().add(new TreeItem<>(newAlbum));
-		parentNode.setExpanded(true); // automatically expand the parent node in the tree	
-			
+	public void onClipsLoaded(Album album, List<SoundClip> clips){
+		soundClipTable.addClips(album, clips);
 	}
-		
-		
 	
-	public void onAlbumRemoved(Album toRemove){
-			
-		TreeItem<Album> root = tree.getRoot();
-			
-		TreeItem<Album> nodeToRemove = findAlbumNode(toRemove, root);
-		nodeToRemove.getParent().getChildren().remove(nodeToRemove);
-			
+	/**
+	 * Refreshes the clipTable in response to sound clips being added or
+	 * removed on disk
+	 */
+	public void onLibraryChanged(){
+		soundClipTable.redisplay();
 	}
-		
-	private TreeItem<Album> findAlbumNode(Album albumToFind, TreeItem<Album> root) {
-			
-		// recursive method to locate a node that contains a specific album in the TreeView
-			
-		if(root.getValue().equals(albumToFind)) {
-			return root;
-		}
-			
-		for(TreeItem<Album> node : root.getChildren()) {
-			TreeItem<Album> item = findAlbumNode(albumToFind, node);
-			if(item != null)
-				return item;
-		}
-		
-		return null;
+	
+	/**
+	 * Redraws the rows of the clipTable, and of the lists in the open album
+	 * windows, when the metadata of some sound clips has been read
+	 */
+	public void onMetadataExtracted(){
+		soundClipTable.refresh();
+		AlbumWindow.refreshOpenWindows();
 	}
 	
 	/**
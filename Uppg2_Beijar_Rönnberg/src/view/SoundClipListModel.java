@@ -0,0 +1,145 @@
+package view;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javafx.collections.ObservableListBase;
+import model.ClipIdSet;
+import model.SoundClip;
+import model.SoundClipRegistry;
+
+/**
+ * SoundClipListModel is the list of sound clips shown by a
+ * SoundClipListView. It stays the same list while different albums are
+ * shown, and is changed by working out which clips to add and remove,
+ * so that showing another album or refreshing after an edit costs time
+ * in proportion to what changed.
+ *
+ * Every change is reported to the ListView as one batch. A removed clip
+ * is replaced by the last clip in the list, so nothing has to be moved.
+ * When a large part of the list changes, the list is instead rebuilt in
+ * one go, in the order of the clip ids.
+ */
+public class SoundClipListModel extends ObservableListBase<SoundClip> {
+
+	private static final int MAX_INCREMENTAL = 2048; // most clips added or removed one by one
+
+	private final List<SoundClip> items = new ArrayList<>();
+	private final ClipIdSet shown = new ClipIdSet();
+	private int[] positions = new int[0]; // index + 1 in items of the clip with each id, 0 if not shown
+
+	@Override
+	public SoundClip get(int index) {
+		return items.get(index);
+	}
+
+	@Override
+	public int size() {
+		return items.size();
+	}
+
+	/**
+	 * Shows exactly the sound clips with the given ids.
+	 */
+	public void setClips(ClipIdSet ids) {
+		ClipIdSet removed = new ClipIdSet(shown);
+		removed.removeAll(ids);
+		ClipIdSet added = new ClipIdSet(ids);
+		added.removeAll(shown);
+		apply(added, removed);
+	}
+
+	/**
+	 * Shows the sound clips with the given ids as well, if they are not shown already.
+	 */
+	public void addClips(ClipIdSet ids) {
+		ClipIdSet added = new ClipIdSet(ids);
+		added.removeAll(shown);
+		apply(added, new ClipIdSet());
+	}
+
+	/**
+	 * Stops showing the sound clips with the given ids.
+	 */
+	public void removeClips(ClipIdSet ids) {
+		ClipIdSet removed = new ClipIdSet(shown);
+		ClipIdSet kept = new ClipIdSet(shown);
+		kept.removeAll(ids);
+		removed.removeAll(kept);
+		apply(new ClipIdSet(), removed);
+	}
+
+	@Override
+	public void clear() {
+		setClips(new ClipIdSet());
+	}
+
+	// Applies one change to the list and reports it as one batch
+	private void apply(ClipIdSet added, ClipIdSet removed) {
+		int changes = added.size() + removed.size();
+		if (changes == 0) return;
+		beginChange();
+		try {
+			if (changes > MAX_INCREMENTAL || changes > items.size() / 4) {
+				rebuild(added, removed);
+			} else {
+				removed.forEach(this::swapRemove);
+				added.forEach(this::append);
+			}
+		} finally {
+			endChange();
+		}
+	}
+
+	// Replaces the whole list, sorted by id
+	private void rebuild(ClipIdSet added, ClipIdSet removed) {
+		List<SoundClip> old = new ArrayList<>(items);
+		for (SoundClip clip : old) {
+			positions[clip.getId()] = 0;
+		}
+		shown.removeAll(removed);
+		shown.addAll(added);
+		items.clear();
+		shown.forEach(id -> {
+			ensurePosition(id);
+			items.add(SoundClipRegistry.get(id));
+			positions[id] = items.size();
+		});
+		if (!old.isEmpty()) nextRemove(0, old);
+		if (!items.isEmpty()) nextAdd(0, items.size());
+	}
+
+	// Removes the clip with id by moving the last clip into its place
+	private void swapRemove(int id) {
+		int i = positions[id] - 1;
+		int last = items.size() - 1;
+		SoundClip removed = items.get(i);
+		if (i != last) {
+			SoundClip moved = items.get(last);
+			items.set(i, moved);
+			positions[moved.getId()] = i + 1;
+			nextSet(i, removed);
+			nextRemove(last, moved);
+		} else {
+			nextRemove(last, removed);
+		}
+		items.remove(last);
+		positions[id] = 0;
+		shown.remove(id);
+	}
+
+	private void append(int id) {
+		ensurePosition(id);
+		items.add(SoundClipRegistry.get(id));
+		positions[id] = items.size();
+		shown.add(id);
+		nextAdd(items.size() - 1, items.size());
+	}
+
+	private void ensurePosition(int id) {
+		if (id >= positions.length) {
+			positions = Arrays.copyOf(positions, Math.max(id + 1, positions.length * 2));
+		}
+	}
+}
@@ -1,41 +1,144 @@
 package view;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
-import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
 import model.Album;
+import model.AlbumEvent;
+import model.ClipIdSet;
+import model.ClipMetadata;
+import model.ClipSearchIndex;
 import model.SoundClip;
 
 public class SoundClipListView extends ListView<SoundClip> {
 
-	private List<SoundClip> clips;
+	private final SoundClipListModel clips = new SoundClipListModel(); // The clips shown, kept between albums
+	private Album album; // The album currently displayed
+	private Consumer<SoundClip> onClipShown; // Told about shown clips that have no metadata yet
+	private ClipSearchIndex searchIndex; // Used to filter the clips, if set
+	private String filter = ""; // Only clips whose names contain this are shown
 	
 	public SoundClipListView() {
 		super();
-		clips = new ArrayList<>();
+		setItems(clips);
+		setCellFactory(list -> new SoundClipCell());
 	}
 
 	public SoundClipListView(ObservableList<SoundClip> arg0) {
 		super(arg0);
-		clips = new ArrayList<>();
+		setCellFactory(list -> new SoundClipCell());
 	}
 	
+	/**
+	 * Sets what to do when a sound clip without metadata is shown in a
+	 * row, e.g. ask for its metadata to be read first. Only the rows on
+	 * screen are shown, so only visible clips are passed on.
+	 */
+	public void setOnClipShown(Consumer<SoundClip> onClipShown) {
+		this.onClipShown = onClipShown;
+	}
+	
+	/**
+	 * Sets the index used to find the clips that match the filter
+	 */
+	public void setSearchIndex(ClipSearchIndex searchIndex) {
+		this.searchIndex = searchIndex;
+	}
+
+	/**
+	 * Only shows the clips of the album whose names contain every word of
+	 * filter. Typing one more letter only removes the clips that no longer
+	 * match from the list.
+	 * @param filter - the words to look for, or an empty string to show all clips
+	 */
+	public void setFilter(String filter){
+		this.filter = filter == null ? "" : filter;
+		redisplay();
+	}
+
+	// Returns the ids among ids that match the filter
+	private ClipIdSet filtered(ClipIdSet ids) {
+		if (searchIndex == null || filter.isBlank()) return ids;
+		return searchIndex.search(filter, ids);
+	}
+
 	/**
 	 * Displays the contents of the specified album
 	 * @param album - the album which contents are to be displayed
 	 */
 	public void display(Album album){
-		this.getItems().clear();
+		this.album = album;
+		if (this.getItems() != clips) {
+			this.setItems(clips);
+		}
 		if (album != null) {
-			album.getSoundClips().forEach(soundClip -> clips.add(soundClip));
+			// Only the clips that differ from what is shown are added or removed
+			clips.setClips(filtered(album.getSoundClipIds()));
 		} else {
 			System.out.println("Album is null");
+			clips.clear();
+		}
+	}
+
+	/**
+	 * Appends sound clips that were added to an album, if that album is
+	 * the one currently displayed
+	 * @param album - the album the clips were added to
+	 * @param newClips - the clips that were added
+	 */
+	public void addClips(Album album, Collection<SoundClip> newClips){
+		if (album != null && album == this.album) {
+			clips.addClips(filtered(new ClipIdSet(newClips)));
+		}
+	}
+
+	/**
+	 * Applies changes to the displayed album to the list, without looking
+	 * at the rest of the album.
+	 * @param events - changes from an AlbumEventBus
+	 */
+	public void applyChanges(List<AlbumEvent> events){
+		for (AlbumEvent e : events) {
+			if (e.getAlbum() != album) continue;
+			if (e instanceof AlbumEvent.ClipsRemoved) {
+				clips.removeClips(((AlbumEvent.ClipsRemoved) e).getClips());
+			} else if (e instanceof AlbumEvent.ClipsAdded) {
+				clips.addClips(filtered(((AlbumEvent.ClipsAdded) e).getClips()));
+			}
+		}
+	}
+
+	/**
+	 * Displays the current album again, e.g. after its contents changed
+	 */
+	public void redisplay(){
+		if (album != null) {
+			display(album);
+		}
+	}
+
+	// Shows the name of a sound clip, followed by its duration and format once they are known
+	private class SoundClipCell extends ListCell<SoundClip> {
+		@Override
+		protected void updateItem(SoundClip clip, boolean empty) {
+			super.updateItem(clip, empty);
+			if (empty || clip == null) {
+				setText(null);
+				return;
+			}
+			ClipMetadata m = clip.getMetadata();
+			if (m == null) {
+				setText(clip.toString());
+				if (onClipShown != null) onClipShown.accept(clip);
+			} else {
+				setText(clip + "    " + m.getDurationText() + "  " + m.getFormatText() + ", " + m.getSizeText());
+			}
 		}
-		ObservableList<SoundClip> temp = FXCollections.observableList(clips);
-		this.setItems(temp);
 	}
 
 	public List<SoundClip> getSelectedClips(){
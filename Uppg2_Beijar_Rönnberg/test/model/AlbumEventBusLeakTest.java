@@ -0,0 +1,120 @@
+package model;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AlbumEventBusLeakTest opens and closes 10 000 album windows against one
+ * AlbumEventBus and checks that the bus does not keep them.
+ *
+ * A window is simulated the way AlbumWindow uses the bus: it keeps its
+ * listener, registers it for an album and removes it again when it is
+ * closed. Every other window is thrown away without being closed, which
+ * the weak references of the bus must cope with. After all windows are
+ * gone the bus must hold only the listener of the one window kept open,
+ * none of the thrown away windows may still be reachable, and delivering
+ * a change must not have become slower.
+ *
+ * Run it from the Uppg2 folder, after compiling src into bin:
+ *
+ *   javac -d bin -cp bin test/model/AlbumEventBusLeakTest.java
+ *   java -cp bin model.AlbumEventBusLeakTest
+ *
+ * It exits with status 1 if a check fails.
+ */
+public class AlbumEventBusLeakTest {
+
+	private static final int WINDOWS = 10_000;
+	private static final int ROUNDS = 5;
+
+	// Stands in for an AlbumWindow: some memory for the scene, and the
+	// listener the window keeps reachable through its stage
+	private static class FakeWindow {
+		final byte[] scene = new byte[20_000];
+		int changes = 0;
+		final AlbumListener listener = events -> changes += events.size();
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		List<Runnable> deliveries = new ArrayList<>();
+		AlbumEventBus bus = new AlbumEventBus(deliveries::add);
+		Album album = new Album("Album");
+		SoundClip clip = SoundClipRegistry.intern(new File("leak-test/clip.wav"));
+
+		FakeWindow kept = new FakeWindow();
+		bus.addListener(album, kept.listener);
+		long before = deliveryTime(bus, album, clip, deliveries);
+
+		List<WeakReference<FakeWindow>> abandoned = new ArrayList<>();
+		int perRound = WINDOWS / ROUNDS;
+		for (int round = 1; round <= ROUNDS; round++) {
+			for (int i = 0; i < perRound; i++) {
+				FakeWindow w = new FakeWindow();
+				bus.addListener(album, w.listener);
+				if (i % 2 == 0) {
+					bus.removeListener(album, w.listener); // closed by the user
+				} else {
+					abandoned.add(new WeakReference<>(w)); // thrown away while open
+				}
+			}
+			collectGarbage();
+			System.out.printf("after %5d windows: %d listeners, delivery %d us%n",
+					round * perRound, bus.getListenerCount(), deliveryTime(bus, album, clip, deliveries) / 1000);
+		}
+
+		int reachable = 0;
+		for (WeakReference<FakeWindow> ref : abandoned) {
+			if (ref.get() != null) reachable++;
+		}
+		long after = deliveryTime(bus, album, clip, deliveries);
+
+		boolean ok = true;
+		ok &= check(bus.getListenerCount() == 1, "the bus holds " + bus.getListenerCount() + " listeners, expected 1");
+		ok &= check(reachable == 0, reachable + " thrown away windows are still reachable");
+		ok &= check(kept.changes > 0, "the window kept open got no changes");
+		// Generous, since the time of a single delivery is only a few microseconds
+		ok &= check(after <= 10 * before + 1_000_000,
+				"a delivery took " + after / 1000 + " us after the windows, " + before / 1000 + " us before");
+		System.out.println(ok ? "OK" : "FAILED");
+		if (!ok) System.exit(1);
+	}
+
+	private static boolean check(boolean condition, String message) {
+		if (!condition) System.out.println("FAILED: " + message);
+		return condition;
+	}
+
+	// Returns the shortest time in ns of 20 deliveries of an added and a
+	// removed clip to the listeners of album
+	private static long deliveryTime(AlbumEventBus bus, Album album, SoundClip clip, List<Runnable> deliveries) {
+		ClipIdSet ids = new ClipIdSet();
+		ids.add(clip.getId());
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < 20; i++) {
+			bus.clipsAdded(album, album.addSoundClips(ids));
+			long start = System.nanoTime();
+			runAll(deliveries);
+			best = Math.min(best, System.nanoTime() - start);
+			bus.clipsRemoved(album, album.removeSoundClips(ids));
+			runAll(deliveries);
+		}
+		return best;
+	}
+
+	private static void runAll(List<Runnable> deliveries) {
+		List<Runnable> batch = new ArrayList<>(deliveries);
+		deliveries.clear();
+		for (Runnable r : batch) {
+			r.run();
+		}
+	}
+
+	private static void collectGarbage() throws InterruptedException {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+	}
+}
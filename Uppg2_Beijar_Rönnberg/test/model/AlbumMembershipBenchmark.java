@@ -0,0 +1,132 @@
+package model;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * AlbumMembershipBenchmark measures the heap taken by the clip membership
+ * of 100 albums of 50 000 clips each in a library of 1 000 000 clips,
+ * stored as a HashSet<SoundClip>, as Album did before, and as the
+ * ClipIdSet that Album uses now.
+ *
+ * It does so twice: for albums holding a run of clips, e.g. the clips of
+ * one folder, which get ids next to each other, and for albums holding
+ * clips spread over the whole library, the worst case for a ClipIdSet.
+ * Only the sets are measured, not the clips, which exist either way.
+ *
+ * It then checks an album for 1 000 000 clips with containsSoundClip and
+ * reports how many bytes that allocated, which must be none.
+ *
+ * Run it from the Uppg2 folder, after compiling src into bin:
+ *
+ *   javac -d bin -cp bin test/model/AlbumMembershipBenchmark.java
+ *   java -Xmx2g -cp bin model.AlbumMembershipBenchmark
+ *
+ * It exits with status 1 if containsSoundClip allocates, or gives a
+ * different answer than the HashSet.
+ */
+public class AlbumMembershipBenchmark {
+
+	private static final int CLIPS = 1_000_000;
+	private static final int ALBUMS = 100;
+	private static final int CLIPS_PER_ALBUM = 50_000;
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private static Object[] kept; // the sets being measured, reachable so that the collector keeps them
+
+	public static void main(String[] args) {
+		SoundClip[] clips = new SoundClip[CLIPS];
+		for (int i = 0; i < CLIPS; i++) {
+			clips[i] = SoundClipRegistry.intern(new File("/library/folder" + i / 1000 + "/clip_" + i + ".wav"));
+		}
+
+		measure("run of clips", clips, false);
+		measure("spread clips", clips, true);
+
+		// Every 20th clip of the library, so one check in 20 below hits
+		Album album = new Album("Album");
+		Set<SoundClip> expected = new HashSet<>();
+		for (int i = 0; i < CLIPS; i += 20) {
+			album.addSoundClip(clips[i]);
+			expected.add(clips[i]);
+		}
+		boolean ok = true;
+		for (int i = 0; i < CLIPS; i++) {
+			if (album.containsSoundClip(clips[i]) != expected.contains(clips[i])) {
+				System.out.println("FAILED: containsSoundClip is wrong for clip " + i);
+				ok = false;
+				break;
+			}
+		}
+		int hits = 0;
+		for (int round = 0; round < 3; round++) { // the last round runs compiled code
+			long before = allocatedBytes();
+			long overhead = allocatedBytes() - before; // what reading the counter allocates
+			before = allocatedBytes();
+			hits = 0;
+			for (int i = 0; i < CLIPS; i++) {
+				if (album.containsSoundClip(clips[i])) hits++;
+			}
+			long allocated = allocatedBytes() - before - overhead;
+			if (round == 2) {
+				System.out.printf("%d containsSoundClip checks, %d hits: %d bytes allocated%n", CLIPS, hits, allocated);
+				if (allocated > 0) {
+					System.out.println("FAILED: containsSoundClip allocates");
+					ok = false;
+				}
+			}
+		}
+
+		System.out.println(ok ? "OK" : "FAILED");
+		if (!ok) System.exit(1);
+	}
+
+	// Prints the heap per album of ALBUMS albums stored both ways. Spread
+	// albums take every 20th clip of the library, starting at different clips.
+	private static void measure(String name, SoundClip[] clips, boolean spread) {
+		long before = usedHeap();
+		kept = new Object[ALBUMS];
+		for (int a = 0; a < ALBUMS; a++) {
+			Set<SoundClip> set = new HashSet<>();
+			for (int i = 0; i < CLIPS_PER_ALBUM; i++) {
+				set.add(clips[clip(a, i, spread)]);
+			}
+			kept[a] = set;
+		}
+		long hashSet = (usedHeap() - before) / ALBUMS;
+		kept = null;
+
+		before = usedHeap();
+		kept = new Object[ALBUMS];
+		for (int a = 0; a < ALBUMS; a++) {
+			ClipIdSet set = new ClipIdSet();
+			for (int i = 0; i < CLIPS_PER_ALBUM; i++) {
+				set.add(clips[clip(a, i, spread)].getId());
+			}
+			kept[a] = set;
+		}
+		long clipIdSet = (usedHeap() - before) / ALBUMS;
+		kept = null;
+		System.out.printf("%-12s per album: HashSet %7d KB, ClipIdSet %5d KB%n", name, hashSet / 1024, clipIdSet / 1024);
+	}
+
+	private static int clip(int album, int i, boolean spread) {
+		return spread ? (i * 20 + album) % CLIPS : (album * CLIPS_PER_ALBUM / 5 + i) % CLIPS;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static long allocatedBytes() {
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
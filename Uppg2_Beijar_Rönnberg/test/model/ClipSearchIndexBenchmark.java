@@ -0,0 +1,113 @@
+package model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ClipSearchIndexBenchmark indexes 1 000 000 made up clip names and times
+ * searches in them, both in the whole library and in an album of 5 000
+ * clips, which is what filtering the clip list does.
+ *
+ * It prints the time to build the index, the memory it takes and the best
+ * of five runs of every query, and checks the results of some queries
+ * against a plain scan of the names, also after clips have been removed
+ * and added again.
+ *
+ * Run it from the Uppg2 folder, after compiling src into bin, with enough
+ * heap for a million clips:
+ *
+ *   javac -d bin -cp bin test/model/ClipSearchIndexBenchmark.java
+ *   java -Xmx2g -cp bin model.ClipSearchIndexBenchmark
+ *
+ * It exits with status 1 if a result is wrong.
+ */
+public class ClipSearchIndexBenchmark {
+
+	private static final int CLIPS = 1_000_000;
+	private static final int ALBUM = 5_000;
+
+	private static final String[] FOLDERS = { "drums", "bass", "vocals", "fx", "pads", "leads", "ambience", "foley", "loops", "oneshots" };
+	private static final String[] WORDS = { "kick", "snare", "hat", "clap", "deep", "bright", "warm", "dark", "analog", "vintage",
+			"punchy", "soft", "hard", "wet", "dry", "long", "short", "tape", "lofi", "crunch" };
+	private static final String[] QUERIES = { "12345", "kick_snare_9999", "vintage 77777", "punchy 4242", "drums/", "crunch", "zzz", "ki", "k" };
+
+	public static void main(String[] args) {
+		Random random = new Random(7);
+		List<SoundClip> clips = new ArrayList<>(CLIPS);
+		for (int i = 0; i < CLIPS; i++) {
+			String name = WORDS[random.nextInt(WORDS.length)] + "_" + WORDS[random.nextInt(WORDS.length)] + "_" + i + ".wav";
+			clips.add(SoundClipRegistry.intern(new File("/library/" + FOLDERS[random.nextInt(FOLDERS.length)] + "/" + name)));
+		}
+
+		long heapBefore = usedHeap();
+		ClipSearchIndex index = new ClipSearchIndex();
+		long start = System.nanoTime();
+		for (int i = 0; i < CLIPS; i += 1000) {
+			index.addAll(clips.subList(i, i + 1000)); // in batches, as the loader adds them
+		}
+		System.out.printf("indexed %d clips in %d ms, %d MB%n", index.size(), (System.nanoTime() - start) / 1_000_000,
+				(usedHeap() - heapBefore) / (1024 * 1024));
+		System.out.println(index);
+
+		ClipIdSet all = new ClipIdSet(clips);
+		ClipIdSet album = new ClipIdSet(clips.subList(0, ALBUM));
+		for (String query : QUERIES) {
+			System.out.printf("%-18s library: %7d hits %8.3f ms | album: %5d hits %7.3f ms%s%n", "\"" + query + "\"",
+					index.search(query, all).size(), bestTime(index, query, all) / 1e6,
+					index.search(query, album).size(), bestTime(index, query, album) / 1e6,
+					ClipSearchIndex.canLookUp(query) ? "" : " (checks every clip)");
+		}
+
+		boolean ok = check(index, clips, all, "kick_snare_99", "4242", "fx/warm", "ki");
+
+		start = System.nanoTime();
+		index.removeAll(clips.subList(0, CLIPS / 2));
+		System.out.printf("removed %d clips in %d ms%n", CLIPS / 2, (System.nanoTime() - start) / 1_000_000);
+		start = System.nanoTime();
+		index.addAll(clips.subList(0, CLIPS / 2));
+		System.out.printf("added them again in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+		ok &= check(index, clips, all, "kick_snare_99", "4242");
+
+		System.out.println(ok ? "OK" : "FAILED");
+		if (!ok) System.exit(1);
+	}
+
+	// Returns the shortest time in ns of five searches for query
+	private static long bestTime(ClipSearchIndex index, String query, ClipIdSet within) {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++) {
+			long start = System.nanoTime();
+			index.search(query, within);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	// Compares the number of hits of each query with a scan of the names
+	private static boolean check(ClipSearchIndex index, List<SoundClip> clips, ClipIdSet all, String... queries) {
+		boolean ok = true;
+		for (String query : queries) {
+			int expected = 0;
+			for (SoundClip clip : clips) {
+				File file = clip.getFile();
+				if ((file.getParentFile().getName() + "/" + file.getName()).toLowerCase().contains(query)) expected++;
+			}
+			int found = index.search(query, all).size();
+			if (found != expected) {
+				System.out.println("FAILED: \"" + query + "\" found " + found + " clips, expected " + expected);
+				ok = false;
+			}
+		}
+		return ok;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
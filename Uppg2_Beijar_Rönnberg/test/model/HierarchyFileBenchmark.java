@@ -0,0 +1,200 @@
+package model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * HierarchyFileBenchmark saves and loads a large album hierarchy, 200 000
+ * sound clips in 5 101 albums, in the .mlib format of HierarchyFile and in
+ * the Java serialization .ser format that earlier versions saved.
+ *
+ * It prints the best of five times for saving and loading in each format
+ * and the size of the files, and checks that both files load back into
+ * the same albums holding the same clips.
+ *
+ * The old classes no longer exist, so the .ser file is written from copies
+ * of their fields below, and their class names in the stream are replaced
+ * with model.Album and model.SoundClip, which is what the old files hold.
+ *
+ * Run it from the Uppg2 folder, after compiling src into bin:
+ *
+ *   javac -d bin -cp bin test/model/HierarchyFileBenchmark.java
+ *   java -Xmx2g -cp bin model.HierarchyFileBenchmark
+ *
+ * It exits with status 1 if a loaded hierarchy differs from the saved one.
+ */
+public class HierarchyFileBenchmark {
+
+	private static final int CLIPS = 200_000;
+	private static final int GROUPS = 100; // albums below the root
+	private static final int ALBUMS_PER_GROUP = 50; // albums below each of them
+	private static final int CLIPS_PER_ALBUM = 40;
+	private static final int RUNS = 5;
+
+	// The fields of model.Album and model.SoundClip as earlier versions saved them
+	private static class OldAlbum implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private String title;
+		private OldAlbum parentAblum;
+		private HashSet<OldAlbum> subAlbums = new HashSet<>();
+		private HashSet<OldSoundClip> soundClips = new HashSet<>();
+	}
+
+	private static class OldSoundClip implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private File file;
+	}
+
+	public static void main(String[] args) throws IOException {
+		SoundClip[] clips = new SoundClip[CLIPS];
+		OldSoundClip[] oldClips = new OldSoundClip[CLIPS];
+		for (int i = 0; i < CLIPS; i++) {
+			File file = new File("/library/folder" + i / 1000 + "/clip_" + i + ".wav");
+			clips[i] = SoundClipRegistry.intern(file);
+			oldClips[i] = new OldSoundClip();
+			oldClips[i].file = file;
+		}
+		Album root = new Album("All Sound Clips");
+		OldAlbum oldRoot = oldAlbum("All Sound Clips", null);
+		for (int i = 0; i < CLIPS; i++) {
+			root.addSoundClip(clips[i]);
+			oldRoot.soundClips.add(oldClips[i]);
+		}
+		int next = 0;
+		for (int g = 0; g < GROUPS; g++) {
+			Album group = new Album("Group " + g, root);
+			OldAlbum oldGroup = oldAlbum("Group " + g, oldRoot);
+			for (int a = 0; a < ALBUMS_PER_GROUP; a++) {
+				Album album = new Album("Album " + a, group);
+				OldAlbum oldAlbum = oldAlbum("Album " + a, oldGroup);
+				for (int c = 0; c < CLIPS_PER_ALBUM; c++) {
+					int clip = next++ * 7 % CLIPS; // spread over the library, some clips in several albums
+					album.addSoundClip(clips[clip]);
+					oldAlbum.soundClips.add(oldClips[clip]);
+				}
+			}
+		}
+		Map<String, Set<SoundClip>> expected = describe(root);
+
+		File dir = Files.createTempDirectory("hierarchy-benchmark").toFile();
+		File mlib = new File(dir, "hierarchy.mlib");
+		File ser = new File(dir, "hierarchy.ser");
+
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			HierarchyFile.save(root, mlib);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		System.out.printf(".mlib save %7.1f ms, %6d KB%n", best / 1e6, mlib.length() / 1024);
+
+		byte[] serialized = null;
+		best = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+			try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+				out.writeObject(oldRoot);
+			}
+			serialized = bytes.toByteArray();
+			Files.write(ser.toPath(), serialized);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		serialized = rename(serialized, OldAlbum.class, "model.Album");
+		serialized = rename(serialized, OldSoundClip.class, "model.SoundClip");
+		Files.write(ser.toPath(), serialized);
+		System.out.printf(".ser  save %7.1f ms, %6d KB%n", best / 1e6, ser.length() / 1024);
+
+		boolean ok = true;
+		for (File file : new File[] { mlib, ser }) {
+			Album loaded = null;
+			best = Long.MAX_VALUE;
+			for (int i = 0; i < RUNS; i++) {
+				long start = System.nanoTime();
+				loaded = HierarchyFile.load(file);
+				best = Math.min(best, System.nanoTime() - start);
+			}
+			System.out.printf("%-5s load %7.1f ms%n", file.getName().substring(file.getName().indexOf('.')), best / 1e6);
+			if (!describe(loaded).equals(expected)) {
+				System.out.println("FAILED: " + file.getName() + " does not load back into the saved albums");
+				ok = false;
+			}
+		}
+
+		mlib.delete();
+		ser.delete();
+		dir.delete();
+		System.out.println(ok ? "OK" : "FAILED");
+		if (!ok) System.exit(1);
+	}
+
+	private static OldAlbum oldAlbum(String title, OldAlbum parent) {
+		OldAlbum album = new OldAlbum();
+		album.title = title;
+		album.parentAblum = parent;
+		if (parent != null) parent.subAlbums.add(album);
+		return album;
+	}
+
+	// Maps the path of titles of every album to the sound clips it holds
+	private static Map<String, Set<SoundClip>> describe(Album root) {
+		Map<String, Set<SoundClip>> albums = new HashMap<>();
+		describe(root, "", albums);
+		return albums;
+	}
+
+	private static void describe(Album album, String parentPath, Map<String, Set<SoundClip>> albums) {
+		String path = parentPath + "/" + album;
+		albums.put(path, new HashSet<>(album.getSoundClips()));
+		for (Album subAlbum : album.getSubAlbums()) {
+			describe(subAlbum, path, albums);
+		}
+	}
+
+	// Replaces the name of a class in a serialization stream, both where the
+	// class is described and in the type signatures of fields holding it.
+	// Both are written as a two byte length followed by the UTF-8 bytes.
+	private static byte[] rename(byte[] stream, Class<?> c, String name) {
+		stream = replace(stream, utf(c.getName()), utf(name));
+		return replace(stream, utf("L" + c.getName().replace('.', '/') + ";"), utf("L" + name.replace('.', '/') + ";"));
+	}
+
+	private static byte[] utf(String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		byte[] result = new byte[bytes.length + 2];
+		result[0] = (byte) (bytes.length >> 8);
+		result[1] = (byte) bytes.length;
+		System.arraycopy(bytes, 0, result, 2, bytes.length);
+		return result;
+	}
+
+	private static byte[] replace(byte[] data, byte[] from, byte[] to) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+		int i = 0;
+		while (i < data.length) {
+			if (i + from.length <= data.length && startsWith(data, i, from)) {
+				out.write(to, 0, to.length);
+				i += from.length;
+			} else {
+				out.write(data[i++]);
+			}
+		}
+		return out.toByteArray();
+	}
+
+	private static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+		for (int i = 0; i < prefix.length; i++) {
+			if (data[offset + i] != prefix[i]) return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,115 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * LibraryScanBenchmark makes a library of empty WAV files in a temporary
+ * folder and times scanning it with SoundClipScanner, first without a
+ * LibraryIndex (cold) and then with the index saved by that scan (warm),
+ * which is what a restart of the program does.
+ *
+ * It also adds a file to one folder and checks that the next warm scan
+ * finds it. The warm times include loading the index from its file.
+ * Cold here only means without an index: the folders are in the cache of
+ * the operating system either way, so a scan after a reboot is slower.
+ *
+ * Run it from the Uppg2 folder, after compiling src into bin, optionally
+ * with the number of files, 20 000 by default, in folders of 40:
+ *
+ *   javac -d bin -cp bin test/model/LibraryScanBenchmark.java
+ *   java -cp bin model.LibraryScanBenchmark 400000
+ *
+ * It exits with status 1 if a scan finds the wrong number of clips.
+ */
+public class LibraryScanBenchmark {
+
+	private static final int FILES_PER_FOLDER = 40;
+	private static final int FOLDERS_PER_GROUP = 20;
+	private static final int RUNS = 5;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int files = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+		Path library = Files.createTempDirectory("scan-benchmark");
+		String root = library.toString();
+		File indexFile = new File(library.toFile(), "library.idx");
+		try {
+			int folders = makeLibrary(library, files);
+			System.out.printf("library of %d files in %d folders%n", files, folders);
+
+			boolean ok = true;
+			long best = Long.MAX_VALUE;
+			for (int i = 0; i < RUNS; i++) {
+				long start = System.nanoTime();
+				LibraryIndex index = new LibraryIndex(root);
+				int found = scan(root, index);
+				best = Math.min(best, System.nanoTime() - start);
+				ok &= check(found, files, "cold scan");
+				index.save(indexFile);
+			}
+			System.out.printf("cold scan %8.1f ms%n", best / 1e6);
+
+			best = Long.MAX_VALUE;
+			for (int i = 0; i < RUNS; i++) {
+				long start = System.nanoTime();
+				LibraryIndex index = LibraryIndex.load(indexFile, root);
+				int found = scan(root, index);
+				best = Math.min(best, System.nanoTime() - start);
+				ok &= check(found, files, "warm scan");
+				index.save(indexFile);
+			}
+			System.out.printf("warm scan %8.1f ms%n", best / 1e6);
+
+			// A change must be seen even though the rest comes from the index
+			Thread.sleep(10); // so the folder gets a newer modified time
+			Files.createFile(library.resolve("group0").resolve("folder0").resolve("added.wav"));
+			long start = System.nanoTime();
+			int found = scan(root, LibraryIndex.load(indexFile, root));
+			System.out.printf("warm scan after adding a file %8.1f ms%n", (System.nanoTime() - start) / 1e6);
+			ok &= check(found, files + 1, "warm scan after adding a file");
+
+			System.out.println(ok ? "OK" : "FAILED");
+			if (!ok) System.exit(1);
+		} finally {
+			delete(library);
+		}
+	}
+
+	// Makes files empty WAV files in folders of FILES_PER_FOLDER, grouped
+	// FOLDERS_PER_GROUP to a folder, and returns the number of folders
+	private static int makeLibrary(Path library, int files) throws IOException {
+		int folders = 0;
+		for (int i = 0; i < files; i++) {
+			int folder = i / FILES_PER_FOLDER;
+			Path dir = library.resolve("group" + folder / FOLDERS_PER_GROUP).resolve("folder" + folder % FOLDERS_PER_GROUP);
+			if (i % FILES_PER_FOLDER == 0) {
+				Files.createDirectories(dir);
+				folders++;
+			}
+			Files.createFile(dir.resolve("clip_" + i + ".wav"));
+		}
+		return folders;
+	}
+
+	private static int scan(String root, LibraryIndex index) {
+		SoundClipScanner scanner = new SoundClipScanner();
+		scanner.setIndex(index);
+		return scanner.scan(root).size();
+	}
+
+	private static boolean check(int found, int expected, String what) {
+		if (found == expected) return true;
+		System.out.println("FAILED: " + what + " found " + found + " clips, expected " + expected);
+		return false;
+	}
+
+	private static void delete(Path library) throws IOException {
+		try (Stream<Path> paths = Files.walk(library)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PlayQueueBenchmark compares the throughput and latency of the bounded
+ * SoundClipBlockingQueue with the synchronized LinkedList queue it
+ * replaced, under contention from several producer and consumer threads.
+ *
+ * Every producer puts LISTS lists on the queue and the consumers take
+ * them until each has been taken once. Each list carries the time it was
+ * put on the queue, so the consumers can record how long it waited.
+ * The old queue has no bound, so its producers never wait and lists can
+ * pile up in it, while the producers of the new one wait when it is full.
+ *
+ * Run it from the Uppg2 folder, after compiling src into bin:
+ *
+ *   javac -d bin -cp bin test/model/PlayQueueBenchmark.java
+ *   java -cp bin model.PlayQueueBenchmark
+ *
+ * It exits with status 1 if a list is lost or taken twice.
+ */
+public class PlayQueueBenchmark {
+
+	private static final int LISTS = 250_000; // per producer
+	private static final int RUNS = 3;
+	private static final int[][] THREADS = { { 1, 1 }, { 4, 1 }, { 4, 4 }, { 8, 8 } }; // producers, consumers
+
+	// The operations both queues have
+	private interface PlayQueue {
+		void put(List<SoundClip> clips) throws InterruptedException;
+		List<SoundClip> take() throws InterruptedException;
+	}
+
+	// The play queue as it was before: a LinkedList guarded by the queue's
+	// lock, and every enqueue wakes every waiting thread
+	private static class OldQueue implements PlayQueue {
+		private final List<List<SoundClip>> queue = new LinkedList<>();
+
+		@Override
+		public synchronized void put(List<SoundClip> clips) {
+			queue.add(clips);
+			notifyAll();
+		}
+
+		@Override
+		public synchronized List<SoundClip> take() throws InterruptedException {
+			while (queue.size() == 0) {
+				wait();
+			}
+			return queue.remove(0);
+		}
+	}
+
+	private static class NewQueue implements PlayQueue {
+		private final SoundClipBlockingQueue queue = new SoundClipBlockingQueue();
+
+		@Override
+		public void put(List<SoundClip> clips) throws InterruptedException {
+			queue.enqueue(clips);
+		}
+
+		@Override
+		public List<SoundClip> take() throws InterruptedException {
+			return queue.dequeue();
+		}
+	}
+
+	// An empty list of clips that remembers when it was put on the queue;
+	// a consumer that takes one with enqueued < 0 stops
+	private static class Stamped extends AbstractList<SoundClip> {
+		final long enqueued;
+
+		Stamped(long enqueued) {
+			this.enqueued = enqueued;
+		}
+
+		@Override
+		public SoundClip get(int index) {
+			throw new IndexOutOfBoundsException(index);
+		}
+
+		@Override
+		public int size() {
+			return 0;
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		System.out.println(Runtime.getRuntime().availableProcessors() + " processors");
+		boolean ok = true;
+		for (int[] threads : THREADS) {
+			for (String name : new String[] { "old", "new" }) {
+				long best = Long.MAX_VALUE;
+				OrganizerMetrics.Histogram latency = null;
+				for (int i = 0; i < RUNS; i++) {
+					OrganizerMetrics.Histogram h = new OrganizerMetrics.Histogram();
+					PlayQueue queue = name.equals("old") ? new OldQueue() : new NewQueue();
+					long start = System.nanoTime();
+					long taken = run(queue, threads[0], threads[1], h);
+					long time = System.nanoTime() - start;
+					if (taken != (long) LISTS * threads[0]) {
+						System.out.println("FAILED: " + taken + " lists taken, expected " + (long) LISTS * threads[0]);
+						ok = false;
+					}
+					if (time < best) {
+						best = time;
+						latency = h;
+					}
+				}
+				long lists = (long) LISTS * threads[0];
+				System.out.printf("%d producers, %d consumers, %s queue: %9.0f lists/s, wait p50 %8.3f ms p95 %8.3f ms max %8.1f ms%n",
+						threads[0], threads[1], name, lists / (best / 1e9), latency.getPercentileMillis(50),
+						latency.getPercentileMillis(95), latency.getMaxMillis());
+			}
+		}
+		System.out.println(ok ? "OK" : "FAILED");
+		if (!ok) System.exit(1);
+	}
+
+	// Runs the producers and consumers to the end and returns the number of lists taken
+	private static long run(PlayQueue queue, int producers, int consumers, OrganizerMetrics.Histogram latency)
+			throws InterruptedException {
+		AtomicLong taken = new AtomicLong();
+		Thread[] consumerThreads = new Thread[consumers];
+		for (int c = 0; c < consumers; c++) {
+			consumerThreads[c] = new Thread(() -> {
+				try {
+					while (true) {
+						Stamped s = (Stamped) queue.take();
+						if (s.enqueued < 0) return;
+						latency.record(System.nanoTime() - s.enqueued);
+						taken.incrementAndGet();
+					}
+				} catch (InterruptedException e) {
+					// the benchmark is over
+				}
+			});
+			consumerThreads[c].start();
+		}
+		Thread[] producerThreads = new Thread[producers];
+		for (int p = 0; p < producers; p++) {
+			producerThreads[p] = new Thread(() -> {
+				try {
+					for (int i = 0; i < LISTS; i++) {
+						queue.put(new Stamped(System.nanoTime()));
+					}
+				} catch (InterruptedException e) {
+					// the benchmark is over
+				}
+			});
+			producerThreads[p].start();
+		}
+		for (Thread t : producerThreads) {
+			t.join();
+		}
+		for (int c = 0; c < consumers; c++) {
+			queue.put(new Stamped(-1));
+		}
+		for (Thread t : consumerThreads) {
+			t.join();
+		}
+		return taken.get();
+	}
+}
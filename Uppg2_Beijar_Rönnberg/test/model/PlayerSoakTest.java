@@ -0,0 +1,217 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * PlayerSoakTest plays 6 000 short WAV files through a SoundClipPlayer
+ * with a SampledAudioBackend, and checks that the heap, the open files
+ * and the threads of the program stay the same over the whole run.
+ *
+ * The clips are 200 files of 50 ms in a temporary folder, most of them
+ * 44.1 kHz stereo and every tenth 22.05 kHz mono, so the player both
+ * goes on in the running line and opens it again. The cache is given no
+ * room, so every clip is opened from its file. They are put on the queue
+ * in lists of ten, and every fiftieth list is paused, resumed and skipped.
+ *
+ * The line is a stand-in that takes the samples as fast as they come, so
+ * the run takes seconds rather than minutes; it counts the bytes written.
+ * After every 1 000 clips the heap after a collection, the number of open
+ * file descriptors and the number of threads are printed.
+ *
+ * Run it from the Uppg2 folder, after compiling src into bin, on a system
+ * that reports open file descriptors, such as Linux or macOS:
+ *
+ *   javac -d bin -cp bin test/model/PlayerSoakTest.java
+ *   java -cp bin model.PlayerSoakTest
+ *
+ * It exits with status 1 if a clip is not played, or if the heap grows by
+ * more than 1 MB or the open files or threads grow after the first 1 000.
+ */
+public class PlayerSoakTest {
+
+	private static final int FILES = 200;
+	private static final int CLIPS = 6_000;
+	private static final int CLIPS_PER_LIST = 10;
+	private static final int REPORT_EVERY = 1_000;
+	private static final long MAX_HEAP_GROWTH = 1024 * 1024;
+
+	private static final AudioFormat STEREO = new AudioFormat(44100, 16, 2, true, false);
+	private static final AudioFormat MONO = new AudioFormat(22050, 16, 1, true, false);
+
+	private static long written = 0; // bytes written to the line, only touched by the player thread
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		File dir = Files.createTempDirectory("player-soak").toFile();
+		List<SoundClip> files = makeClips(dir);
+
+		// The started callback is the one place every clip that plays passes through
+		AtomicLong started = new AtomicLong();
+		AudioBackend sampled = new SampledAudioBackend(fakeMixer(), new PcmCache(0));
+		AudioBackend counting = (AudioBackend) Proxy.newProxyInstance(AudioBackend.class.getClassLoader(),
+				new Class<?>[] { AudioBackend.class }, (proxy, method, a) -> {
+					if (method.getName().equals("start")) {
+						Runnable callback = (Runnable) a[1];
+						a[1] = (Runnable) () -> { started.incrementAndGet(); callback.run(); };
+					}
+					return method.invoke(sampled, a);
+				});
+
+		SoundClipBlockingQueue queue = new SoundClipBlockingQueue();
+		SoundClipPlayer player = new SoundClipPlayer(queue, counting);
+		Thread thread = new Thread(player, "SoundClipPlayer");
+		thread.setDaemon(true);
+
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream())); // the player prints every clip it plays
+		boolean ok = true;
+		long firstHeap = 0, firstFiles = 0, firstThreads = 0;
+		try {
+			thread.start();
+			for (int clip = 0; clip < CLIPS; clip += CLIPS_PER_LIST) {
+				List<SoundClip> list = new ArrayList<>(CLIPS_PER_LIST);
+				for (int i = 0; i < CLIPS_PER_LIST; i++) {
+					list.add(files.get((clip + i) % FILES));
+				}
+				queue.enqueue(list);
+				if (clip / CLIPS_PER_LIST % 50 == 49) {
+					player.pause();
+					player.resume();
+					player.skip();
+				}
+				if ((clip + CLIPS_PER_LIST) % REPORT_EVERY == 0) {
+					long played = clip + CLIPS_PER_LIST;
+					if (!waitFor(started, played)) {
+						out.println("FAILED: " + started.get() + " clips played, expected " + played);
+						ok = false;
+						break;
+					}
+					long heap = usedHeap();
+					long open = openFiles();
+					int threads = Thread.activeCount();
+					out.printf("%5d clips: heap %6d KB, %3d open files, %2d threads%n", played, heap / 1024, open, threads);
+					if (played == REPORT_EVERY) {
+						firstHeap = heap;
+						firstFiles = open;
+						firstThreads = threads;
+					} else if (heap - firstHeap > MAX_HEAP_GROWTH || open > firstFiles || threads > firstThreads) {
+						out.println("FAILED: the footprint grows");
+						ok = false;
+					}
+				}
+			}
+			if (!player.shutdown(1000)) {
+				out.println("FAILED: the player did not shut down");
+				ok = false;
+			}
+		} finally {
+			System.setOut(out);
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+		System.out.printf("%d clips played, %d KB written to the line%n", started.get(), written / 1024);
+		System.out.println(ok ? "OK" : "FAILED");
+		if (!ok) System.exit(1);
+	}
+
+	// Writes FILES WAV files of 50 ms of silence into dir
+	private static List<SoundClip> makeClips(File dir) throws IOException {
+		Random random = new Random(7);
+		List<SoundClip> clips = new ArrayList<>(FILES);
+		for (int i = 0; i < FILES; i++) {
+			AudioFormat format = i % 10 == 9 ? MONO : STEREO;
+			int frames = (int) format.getSampleRate() / 20;
+			byte[] samples = new byte[frames * format.getFrameSize()];
+			random.nextBytes(samples);
+			File file = new File(dir, "clip_" + i + ".wav");
+			AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(samples), format, frames),
+					AudioFileFormat.Type.WAVE, file);
+			clips.add(SoundClipRegistry.intern(file));
+		}
+		return clips;
+	}
+
+	// A mixer whose only line takes every write at once and never blocks
+	private static Mixer fakeMixer() {
+		AudioFormat[] format = new AudioFormat[1];
+		SourceDataLine line = (SourceDataLine) Proxy.newProxyInstance(SourceDataLine.class.getClassLoader(),
+				new Class<?>[] { SourceDataLine.class }, (proxy, method, a) -> {
+					switch (method.getName()) {
+					case "open":
+						format[0] = (AudioFormat) a[0];
+						return null;
+					case "isOpen":
+						return format[0] != null;
+					case "getFormat":
+						return format[0];
+					case "available":
+						return 4096;
+					case "getBufferSize":
+						return 65536;
+					case "write":
+						written += (int) a[2];
+						return a[2];
+					case "close":
+						format[0] = null;
+						return null;
+					default:
+						return defaultValue(method.getReturnType());
+					}
+				});
+		return (Mixer) Proxy.newProxyInstance(Mixer.class.getClassLoader(), new Class<?>[] { Mixer.class },
+				(proxy, method, a) -> method.getName().equals("getLine") ? line : defaultValue(method.getReturnType()));
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if (type == boolean.class) return false;
+		if (type == int.class) return 0;
+		if (type == long.class) return 0L;
+		if (type == float.class) return 0f;
+		return null;
+	}
+
+	// Waits up to 10 s until count reaches expected
+	private static boolean waitFor(AtomicLong count, long expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (count.get() < expected) {
+			if (System.currentTimeMillis() > deadline) return false;
+			Thread.sleep(5);
+		}
+		return true;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static long openFiles() {
+		Object os = ManagementFactory.getOperatingSystemMXBean();
+		if (os instanceof com.sun.management.UnixOperatingSystemMXBean) {
+			return ((com.sun.management.UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount();
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,86 @@
+package model;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * SoundClipMixerBenchmark times the mix loop of SoundClipMixer with 1, 8,
+ * 16 and 32 voices playing, on one thread and without an output line, so
+ * only the mixing itself is measured.
+ *
+ * Every voice plays the same 12 seconds of random 16 bit stereo samples at
+ * the output rate, and the benchmark mixes 10 seconds of sound, in buffers
+ * of 512 frames as the mixer thread does. It prints the best of five runs
+ * as the time per buffer and as a share of the time the sound lasts, and
+ * how many bytes the last run allocated, which must be none.
+ *
+ * Run it from the Uppg2 folder, after compiling src into bin:
+ *
+ *   javac -d bin -cp bin test/model/SoundClipMixerBenchmark.java
+ *   java -cp bin model.SoundClipMixerBenchmark
+ *
+ * It exits with status 1 if the mix loop allocates or mixes the wrong
+ * number of voices.
+ */
+public class SoundClipMixerBenchmark {
+
+	private static final int FRAMES = 512; // per buffer, as in the mixer thread
+	private static final int SECONDS = 10;
+	private static final int RUNS = 5;
+	private static final int[] VOICES = { 1, 8, 16, SoundClipMixer.MAX_VOICES };
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) {
+		float rate = SoundClipMixer.OUTPUT_FORMAT.getSampleRate();
+		byte[] samples = new byte[(int) rate * (SECONDS + 2) * 4];
+		new Random(7).nextBytes(samples);
+		int buffers = (int) (rate * SECONDS / FRAMES);
+		double bufferMicros = FRAMES / rate * 1e6;
+		byte[] out = new byte[FRAMES * 4];
+
+		boolean ok = true;
+		for (int voices : VOICES) {
+			SoundClipMixer mixer = new SoundClipMixer(null, new PcmCache());
+			long best = Long.MAX_VALUE;
+			long allocated = 0;
+			for (int run = 0; run < RUNS; run++) { // the last runs run compiled code
+				for (int v = 0; v < voices; v++) {
+					mixer.play(SoundClipMixer.OUTPUT_FORMAT, samples, 0.5f);
+				}
+				long before = allocatedBytes();
+				long overhead = allocatedBytes() - before; // what reading the counter allocates
+				before = allocatedBytes();
+				long start = System.nanoTime();
+				int mixed = 0;
+				for (int b = 0; b < buffers; b++) {
+					mixed += mixer.mix(out, FRAMES);
+				}
+				long time = System.nanoTime() - start;
+				allocated = allocatedBytes() - before - overhead;
+				best = Math.min(best, time);
+				if (mixed != voices * buffers) {
+					System.out.println("FAILED: " + mixed + " voices mixed, expected " + voices * buffers);
+					ok = false;
+				}
+				mixer.stopAll();
+				mixer.mix(out, FRAMES); // frees the stopped voices
+			}
+			System.out.printf("%2d voices: %d s mixed in %6.1f ms, %6.1f us per %.1f ms buffer, %5.2f %% of real time, %d bytes allocated%n",
+					voices, SECONDS, best / 1e6, best / 1e3 / buffers, bufferMicros / 1e3,
+					100.0 * best / (SECONDS * 1e9), allocated);
+			if (allocated > 0) {
+				System.out.println("FAILED: mix allocates");
+				ok = false;
+			}
+		}
+
+		System.out.println(ok ? "OK" : "FAILED");
+		if (!ok) System.exit(1);
+	}
+
+	private static long allocatedBytes() {
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
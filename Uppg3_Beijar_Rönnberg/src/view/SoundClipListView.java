@@ -29,6 +29,7 @@ public class SoundClipListView extends ListView<SoundClip> {
 	 */
 	public void display(Album album){
 		this.getItems().clear();
+		clips.clear();
 		album.getSoundClips().forEach(soundClip -> clips.add(soundClip));
 		ObservableList<SoundClip> temp = FXCollections.observableList(clips);
 		this.setItems(temp);